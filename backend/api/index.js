@@ -17,6 +17,7 @@ const cloudinary = require('cloudinary').v2;
 const axios = require('axios');
 const jwt = require('jsonwebtoken'); // Import JWT
 const cookieParser = require('cookie-parser');
+const crypto = require('crypto');
 
 
 // Connect to Database
@@ -60,6 +61,7 @@ const LedgerEntry = require('../models/LedgerEntry');
 const SalaryRecord = require('../models/SalaryRecord');
 const LocationLog = require('../models/LocationLog');
 const JobRole = require('../models/JobRole');
+const Photo = require('../models/Photo');
 
 const http = require('http');
 const { Server } = require('socket.io');
@@ -210,9 +212,42 @@ app.get('/api/sites', async (req, res) => {
   } catch (e) { res.status(500).json({ error: e.message }); }
 });
 
+// Polygon boundaries: at least 3 [lat, lng] pairs; null/empty clears it.
+// The app treats them as flat, so polar (|lat| > 89) and antimeridian-crossing polygons are refused.
+const isValidBoundary = (boundary) => {
+  if (!Array.isArray(boundary) || boundary.length < 3) return false;
+  if (!boundary.every(p => Array.isArray(p) && p.length === 2 &&
+    Number.isFinite(p[0]) && Number.isFinite(p[1]) && Math.abs(p[0]) <= 89 && Math.abs(p[1]) <= 180)) return false;
+  const lngs = boundary.map(p => p[1]);
+  return Math.max(...lngs) - Math.min(...lngs) <= 180;
+};
+
+const checkBoundary = (body) => {
+  if (body.boundary === undefined) return null;
+  if (body.boundary === null || (Array.isArray(body.boundary) && body.boundary.length === 0)) {
+    body.boundary = undefined;
+    return null;
+  }
+  return isValidBoundary(body.boundary) ? null : 'boundary must be an array of at least 3 [lat, lng] pairs';
+};
+
+// Photo encoding: 'jpeg' or 'webp', and a non-negative byte budget (0 = fixed quality)
+const checkPhotoEncoding = (body) => {
+  if (body.photoFormat !== undefined && body.photoFormat !== null && !['jpeg', 'webp'].includes(body.photoFormat)) {
+    return "photoFormat must be 'jpeg' or 'webp'";
+  }
+  if (body.photoMaxBytes !== undefined && body.photoMaxBytes !== null &&
+      !(Number.isInteger(body.photoMaxBytes) && body.photoMaxBytes >= 0)) {
+    return 'photoMaxBytes must be a non-negative integer';
+  }
+  return null;
+};
+
 app.post('/api/sites', async (req, res) => {
   try {
     const siteData = req.body;
+    const boundaryError = checkBoundary(siteData) || checkPhotoEncoding(siteData);
+    if (boundaryError) return res.status(400).json({ error: boundaryError });
     
     // Force username to lowercase if provided
     if (siteData.username) {
@@ -236,6 +271,10 @@ app.post('/api/sites', async (req, res) => {
 
 app.put('/api/sites/:id', async (req, res) => {
   try {
+    const clearBoundary = req.body.boundary === null || (Array.isArray(req.body.boundary) && req.body.boundary.length === 0);
+    const boundaryError = checkBoundary(req.body) || checkPhotoEncoding(req.body);
+    if (boundaryError) return res.status(400).json({ error: boundaryError });
+    if (clearBoundary) req.body.$unset = { boundary: 1 };
     // Force username to lowercase if provided
     if (req.body.username) {
         req.body.username = req.body.username.toLowerCase();
@@ -263,7 +302,32 @@ app.get('/api/employees', async (req, res) => {
       sortOptions.name = 1; // Default sort by name asc
     }
 
-    const employees = await Employee.find(query).sort(sortOptions);
+    // Site rosters carry a validator so unchanged rosters cost a 304 (supervisor app)
+    if (site) {
+      const [stats] = await Employee.aggregate([
+        { $match: query },
+        { $group: { _id: null, count: { $sum: 1 }, latest: { $max: '$updatedAt' } } }
+      ]);
+      const count = stats ? stats.count : 0;
+      const latest = stats && stats.latest ? new Date(stats.latest) : new Date(0);
+      const etag = `"roster-${site}-${count}-${latest.getTime()}"`;
+      res.set('ETag', etag);
+      res.set('Last-Modified', latest.toUTCString());
+      if (req.headers['if-none-match'] === etag) {
+        return res.status(304).end();
+      }
+    }
+
+    // Optional paging (page is 0-based)
+    let cursor = Employee.find(query).sort(sortOptions);
+    if (req.query.page !== undefined || req.query.limit !== undefined) {
+      const limit = Math.min(Math.max(parseInt(req.query.limit, 10) || 200, 1), 500);
+      const page = Math.max(parseInt(req.query.page, 10) || 0, 0);
+      // _id tie-breaker keeps page boundaries stable between requests
+      cursor = Employee.find(query).sort({ ...sortOptions, _id: 1 }).skip(page * limit).limit(limit);
+    }
+
+    const employees = await cursor;
     res.json(employees);
   } catch (e) { res.status(500).json({ error: e.message }); }
 });
@@ -345,9 +409,14 @@ app.get('/api/attendance', async (req, res) => {
       query.date = { $regex: `^${year}-${m}` };
     }
 
-    // Efficient Polling: Get only records updated after a certain time
+    // Efficient Polling: Get only records updated at/after the client's cursor (its last seen updatedAt).
+    // $gte so rows sharing the cursor's millisecond are not skipped; clients merge by employee.
     if (updatedAfter) {
-        query.updatedAt = { $gt: new Date(updatedAfter) };
+        const cursor = new Date(updatedAfter);
+        if (isNaN(cursor.getTime())) {
+            return res.status(400).json({ error: 'Invalid updatedAfter cursor' });
+        }
+        query.updatedAt = { $gte: cursor };
     }
 
     // Sort options
@@ -381,6 +450,7 @@ app.post('/api/attendance/sync', async (req, res) => {
           // STRICT LOCK: If ANY record exists for this employee on this date, REJECT IT.
           // This prevents multiple devices from logging the same attendance.
           errors.push({
+              id: record.id,
               employeeId: record.employeeId,
               error: "Attendance already marked for this date. Updates are locked."
           });
@@ -401,6 +471,12 @@ app.post('/api/attendance/sync', async (req, res) => {
         if (publicId) record.photoUrl = publicId;
       }
 
+      // Photo uploaded separately by hash: resolve it now, or later when the upload arrives
+      if (!record.photoUrl && record.photoHash) {
+        const photo = await Photo.findOne({ hash: record.photoHash });
+        if (photo) record.photoUrl = photo.publicId;
+      }
+
       // Prepare bulk operation
       // CHANGED: Use insertOne to strictly prevent duplicates (Race Condition Fix)
       // If a record exists (from another device), this will fail with E11000
@@ -462,6 +538,49 @@ app.post('/api/attendance/sync', async (req, res) => {
   } catch (e) { res.status(500).json({ error: e.message }); }
 });
 
+// Attendance Photos (content-addressed by SHA-256, uploaded separately from the records)
+const PHOTO_HASH_PATTERN = /^[a-f0-9]{64}$/;
+
+app.head('/api/photos/:hash', async (req, res) => {
+  try {
+    const exists = await Photo.exists({ hash: req.params.hash });
+    res.status(exists ? 200 : 404).end();
+  } catch (e) { res.status(500).end(); }
+});
+
+app.put('/api/photos/:hash', express.raw({ type: 'image/*', limit: '10mb' }), async (req, res) => {
+  try {
+    const { hash } = req.params;
+    if (!PHOTO_HASH_PATTERN.test(hash)) return res.status(400).json({ error: 'Invalid photo hash' });
+    if (!Buffer.isBuffer(req.body) || req.body.length === 0) return res.status(400).json({ error: 'Empty photo' });
+
+    const actual = crypto.createHash('sha256').update(req.body).digest('hex');
+    if (actual !== hash) return res.status(400).json({ error: 'Photo hash mismatch' });
+
+    const ratio = Number(req.query.ratio);
+    let photo = await Photo.findOne({ hash });
+    if (!photo) {
+      const mimeType = req.headers['content-type'] || 'image/jpeg';
+      const publicId = await uploadToCloudinary(`data:${mimeType};base64,${req.body.toString('base64')}`, 'ambe_attendance');
+      if (!publicId) return res.status(502).json({ error: 'Photo upload failed' });
+      photo = await Photo.findOneAndUpdate(
+        { hash },
+        {
+          $setOnInsert: {
+            hash, publicId, size: req.body.length, mimeType,
+            compressionRatio: Number.isFinite(ratio) && ratio > 0 ? ratio : undefined
+          }
+        },
+        { upsert: true, new: true }
+      );
+    }
+
+    // Attach to records that synced before their photo arrived
+    await Attendance.updateMany({ photoHash: hash, photoUrl: { $in: [null, ''] } }, { photoUrl: photo.publicId });
+    res.json({ success: true, publicId: photo.publicId });
+  } catch (e) { res.status(500).json({ error: e.message }); }
+});
+
 // Delete Attendance Record (Admin Clear/Reset)
 app.delete('/api/attendance/record/:employeeId/:date', async (req, res) => {
   try {
@@ -1036,6 +1155,60 @@ app.post('/api/supervisor/location', async (req, res) => {
     }
 });
 
+// Batched, delta-encoded tracks from the app (see the app's TrajectoryEncoder):
+// origin = [latE6, lngE6, epochMs], points = flat [dLatE6, dLngE6, dtMs, statusIndex, ...]
+// Each point becomes one LocationLog, same shape as POST /api/supervisor/location.
+app.post('/api/supervisor/location/batch', async (req, res) => {
+    try {
+        const tracks = req.body && req.body.tracks;
+        if (!Array.isArray(tracks)) return res.status(400).json({ error: 'tracks array required' });
+
+        const docs = [];
+        for (const track of tracks) {
+            const { supervisorId, supervisorName, siteId, statuses, origin, points } = track || {};
+            if (!supervisorId || !Array.isArray(statuses) || !Array.isArray(origin) || origin.length !== 3 ||
+                !Array.isArray(points) || points.length % 4 !== 0 || !points.every(Number.isFinite)) {
+                return res.status(400).json({ error: 'Malformed track' });
+            }
+            let [lat, lng, time] = origin;
+            for (let i = 0; i < points.length; i += 4) {
+                lat += points[i];
+                lng += points[i + 1];
+                time += points[i + 2];
+                docs.push({
+                    supervisorId,
+                    supervisorName: supervisorName || 'Unknown',
+                    siteId: siteId || 'Unassigned',
+                    latitude: lat / 1e6,
+                    longitude: lng / 1e6,
+                    status: statuses[points[i + 3]] || 'Unknown',
+                    timestamp: new Date(time)
+                });
+            }
+        }
+
+        // Idempotent: one event per supervisor, site, status and timestamp, so a retried or bisected
+        // chunk re-posting points the server already stored does not duplicate them. Site and status
+        // are part of the key because one fix can leave one site and enter another.
+        let inserted = 0;
+        if (docs.length > 0) {
+            const result = await LocationLog.bulkWrite(docs.map(doc => ({
+                updateOne: {
+                    filter: { supervisorId: doc.supervisorId, siteId: doc.siteId, status: doc.status, timestamp: doc.timestamp },
+                    update: { $setOnInsert: doc },
+                    upsert: true
+                }
+            })), { ordered: false });
+            inserted = result.upsertedCount;
+        }
+        res.json({ success: true, inserted, received: docs.length });
+    } catch (e) {
+        // Bad data is the client's to isolate and drop (4xx); 5xx means try again later
+        const badData = e.name === 'ValidationError' || e.name === 'CastError';
+        res.status(badData ? 400 : 500).json({ error: e.message });
+    }
+});
+
 // Get Location Logs (for Admin and Supervisor)
 app.get('/api/supervisor/location', authenticateToken, async (req, res) => {
     try {
@@ -10,6 +10,7 @@ const AttendanceSchema = new mongoose.Schema({
   type: { type: String, enum: ['IN', 'OUT'], default: 'IN' },
   deviceId: String,
   photoUrl: String,
+  photoHash: String, // SHA-256 of the photo uploaded separately via /api/photos
   location: {
     lat: Number,
     lng: Number,
@@ -25,5 +26,6 @@ const AttendanceSchema = new mongoose.Schema({
 
 // Compound index to ensure one record per employee per day
 AttendanceSchema.index({ employeeId: 1, date: 1 }, { unique: true });
+AttendanceSchema.index({ photoHash: 1 }, { sparse: true });
 
 module.exports = mongoose.model('Attendance', AttendanceSchema);
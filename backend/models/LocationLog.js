@@ -10,4 +10,7 @@ const locationLogSchema = new mongoose.Schema({
   timestamp: { type: Date, default: Date.now }
 });
 
+// Batch uploads upsert on this key (see POST /api/supervisor/location/batch)
+locationLogSchema.index({ supervisorId: 1, siteId: 1, status: 1, timestamp: 1 });
+
 module.exports = mongoose.model('LocationLog', locationLogSchema);
@@ -0,0 +1,12 @@
+const mongoose = require('mongoose');
+
+// Attendance photos uploaded by the supervisor app, addressed by SHA-256 of their bytes
+const PhotoSchema = new mongoose.Schema({
+  hash: { type: String, required: true, unique: true },
+  publicId: { type: String, required: true }, // Cloudinary public_id
+  size: Number,
+  mimeType: String,
+  compressionRatio: Number // Encoded size / original camera file size, reported by the app
+}, { timestamps: true });
+
+module.exports = mongoose.model('Photo', PhotoSchema);
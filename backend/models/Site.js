@@ -8,6 +8,9 @@ const SiteSchema = new mongoose.Schema({
   latitude: { type: Number, required: true },
   longitude: { type: Number, required: true },
   geofenceRadius: { type: Number, default: 200 },
+  boundary: { type: [[Number]], default: undefined }, // Optional polygon as [lat, lng] pairs; geofenceRadius is the fallback
+  photoFormat: { type: String, enum: ['jpeg', 'webp'], default: undefined }, // Attendance photo encoding in the supervisor app
+  photoMaxBytes: { type: Number, min: 0, default: undefined }, // Target size per photo; 0/unset = fixed quality
   clientName: String,
   attendanceGridName: String,
   clientGstin: String,
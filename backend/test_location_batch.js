@@ -0,0 +1,55 @@
+const mongoose = require('mongoose');
+const axios = require('axios');
+const path = require('path');
+require('dotenv').config({ path: path.join(__dirname, '.env') });
+const connectToDatabase = require('./utils/db');
+const LocationLog = require('./models/LocationLog');
+const app = require('./api/index');
+
+// One fix that leaves site A and enters site B: two events with the same timestamp,
+// sent as two tracks the way the app's TrajectoryEncoder groups them
+const supervisorId = 'test_batch_' + Date.now();
+const time = Date.UTC(2099, 0, 1, 9, 30, 0);
+const batch = {
+    tracks: [
+        { supervisorId, supervisorName: 'Batch Test', siteId: 'SITE_A', statuses: ['Out of Range'],
+          origin: [18520400, 73856700, time], points: [0, 0, 0, 0] },
+        { supervisorId, supervisorName: 'Batch Test', siteId: 'SITE_B', statuses: ['In Range'],
+          origin: [18520400, 73856700, time], points: [0, 0, 0, 0] }
+    ]
+};
+
+(async () => {
+    let failed = false;
+    const server = app.listen(0);
+    try {
+        await connectToDatabase();
+        const url = `http://localhost:${server.address().port}/api/supervisor/location/batch`;
+
+        const first = await axios.post(url, batch);
+        console.log('First post:', first.data);
+        // A retried chunk must not duplicate what is already stored
+        const retry = await axios.post(url, batch);
+        console.log('Retry:', retry.data);
+
+        const logs = await LocationLog.find({ supervisorId }).lean();
+        const sites = logs.map(log => `${log.siteId}/${log.status}`).sort();
+        console.log('Stored:', sites);
+
+        if (first.data.inserted !== 2 || retry.data.inserted !== 0 || logs.length !== 2 ||
+            sites[0] !== 'SITE_A/Out of Range' || sites[1] !== 'SITE_B/In Range') {
+            failed = true;
+            console.log('FAIL: expected both same-time events stored exactly once');
+        } else {
+            console.log('PASS');
+        }
+    } catch (error) {
+        failed = true;
+        console.log('Error:', error.response ? error.response.data : error.message);
+    } finally {
+        await LocationLog.deleteMany({ supervisorId });
+        server.close();
+        await mongoose.disconnect();
+        process.exit(failed ? 1 : 0);
+    }
+})();
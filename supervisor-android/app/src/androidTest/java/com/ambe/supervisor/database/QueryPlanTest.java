@@ -0,0 +1,210 @@
+package com.ambe.supervisor.database;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Calls every DAO method on an in-memory database, captures the SQL Room actually runs through
+// its query callback, and checks EXPLAIN QUERY PLAN for each statement: no table scans outside
+// the intentional full reads, and the hot queries on their index. DAOs and their methods are
+// found by reflection, so a new query is checked without editing this test.
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    // Reads and clears that are meant to touch every row
+    private static final Set<String> FULL_TABLE = new HashSet<>(Arrays.asList(
+            "EmployeeDao.getAllEmployees",
+            "EmployeeDao.deleteAll",
+            "SiteDao.getAllSites",
+            "SiteDao.deleteAll"));
+
+    // Hot queries and the indices (any one of them, or the rowid) their plan must use
+    private static final Map<String, String[]> EXPECTED_INDEX = new HashMap<>();
+    static {
+        String isSynced = "index_attendance_isSynced_photoUploaded";
+        String date = "index_attendance_date_employeeId";
+        String photoHash = "index_attendance_photoHash";
+        String siteId = "index_employees_siteId";
+        String rowid = "INTEGER PRIMARY KEY";
+        EXPECTED_INDEX.put("AttendanceDao.getUnsyncedAttendance", new String[]{isSynced});
+        EXPECTED_INDEX.put("AttendanceDao.observePendingCount", new String[]{isSynced});
+        EXPECTED_INDEX.put("AttendanceDao.getPendingPhotoUploads", new String[]{isSynced, photoHash});
+        EXPECTED_INDEX.put("AttendanceDao.markPhotoUploaded", new String[]{photoHash});
+        EXPECTED_INDEX.put("AttendanceDao.countPhotoReferences", new String[]{photoHash});
+        EXPECTED_INDEX.put("AttendanceDao.getReferencedPhotoHashes", new String[]{photoHash});
+        EXPECTED_INDEX.put("AttendanceDao.getPrunablePhotoPaths", new String[]{date, isSynced});
+        EXPECTED_INDEX.put("AttendanceDao.deletePrunable", new String[]{date, isSynced});
+        EXPECTED_INDEX.put("AttendanceDao.pruneAttendance", new String[]{date, isSynced});
+        EXPECTED_INDEX.put("AttendanceDao.getLocationLogChunk", new String[]{rowid});
+        EXPECTED_INDEX.put("AttendanceDao.getAttendanceByDate", new String[]{date});
+        EXPECTED_INDEX.put("AttendanceDao.getAttendanceForEmployee", new String[]{date});
+        EXPECTED_INDEX.put("EmployeeDao.getEmployeesBySite", new String[]{siteId});
+        EXPECTED_INDEX.put("EmployeeDao.deleteBySite", new String[]{siteId});
+    }
+
+    private static final class Statement {
+        final String sql;
+        final Object[] args;
+
+        Statement(String sql, List<Object> args) {
+            this.sql = sql;
+            this.args = args.toArray();
+        }
+
+        // Leaves out transaction control and Room's own invalidation tracking
+        boolean isTableQuery() {
+            String head = sql.trim().toUpperCase(Locale.US);
+            return (head.startsWith("SELECT") || head.startsWith("UPDATE") || head.startsWith("DELETE"))
+                    && !head.contains("ROOM_") && !head.contains("SQLITE_");
+        }
+    }
+
+    private AppDatabase db;
+    private final List<Statement> executed = new CopyOnWriteArrayList<>();
+    private volatile boolean recording;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .setQueryCallback((sql, args) -> {
+                    if (recording) executed.add(new Statement(sql, args));
+                }, Runnable::run)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void everyDaoQueryIsServedByAnIndex() throws Exception {
+        Set<String> checked = new HashSet<>();
+        for (Method accessor : AppDatabase.class.getDeclaredMethods()) {
+            if (!Modifier.isAbstract(accessor.getModifiers()) || accessor.getParameterTypes().length != 0) continue;
+            Class<?> daoType = accessor.getReturnType();
+            Object dao = accessor.invoke(db);
+            for (Method method : daoType.getMethods()) {
+                Object[] args = sampleArgs(method);
+                if (args == null) continue; // Inserts: nothing to plan
+                String name = daoType.getSimpleName() + "." + method.getName();
+                List<Statement> statements = run(dao, method, args);
+                assertFalse(name + " ran no query", statements.isEmpty());
+                checkPlans(name, statements);
+                checked.add(name);
+            }
+        }
+        // Renamed or removed methods must not leave the expectations silently unchecked
+        assertTrue("Unknown FULL_TABLE entries", checked.containsAll(FULL_TABLE));
+        assertTrue("Unknown EXPECTED_INDEX entries", checked.containsAll(EXPECTED_INDEX.keySet()));
+    }
+
+    // Placeholder arguments, or null for methods taking entities (inserts and roster swaps)
+    private static Object[] sampleArgs(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Type[] generic = method.getGenericParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == int.class) {
+                args[i] = 1;
+            } else if (types[i] == long.class) {
+                args[i] = 1L;
+            } else if (types[i] == String.class) {
+                args[i] = "x";
+            } else if (types[i] == List.class && generic[i] instanceof ParameterizedType
+                    && ((ParameterizedType) generic[i]).getActualTypeArguments()[0] == Integer.class) {
+                args[i] = Arrays.asList(1, 2);
+            } else {
+                return null;
+            }
+        }
+        return args;
+    }
+
+    private List<Statement> run(Object dao, Method method, Object[] args) throws Exception {
+        executed.clear();
+        recording = true;
+        try {
+            Object result = method.invoke(dao, args);
+            if (result instanceof LiveData) awaitValue((LiveData<?>) result);
+        } finally {
+            recording = false;
+        }
+        List<Statement> statements = new ArrayList<>();
+        for (Statement statement : executed) {
+            if (statement.isTableQuery()) statements.add(statement);
+        }
+        return statements;
+    }
+
+    // LiveData queries only run while observed
+    private static void awaitValue(LiveData<?> liveData) throws InterruptedException {
+        CountDownLatch emitted = new CountDownLatch(1);
+        Observer<Object> observer = value -> emitted.countDown();
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(() -> liveData.observeForever(observer));
+        try {
+            assertTrue("LiveData never emitted", emitted.await(5, TimeUnit.SECONDS));
+        } finally {
+            instrumentation.runOnMainSync(() -> liveData.removeObserver(observer));
+        }
+    }
+
+    private void checkPlans(String name, List<Statement> statements) {
+        String[] expected = EXPECTED_INDEX.get(name);
+        boolean usesExpected = expected == null;
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+        for (Statement statement : statements) {
+            List<String> plan = new ArrayList<>();
+            try (Cursor cursor = sqlite.query("EXPLAIN QUERY PLAN " + statement.sql, statement.args)) {
+                int detail = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    plan.add(cursor.getString(detail));
+                }
+            }
+            for (String step : plan) {
+                // "SCAN attendance" on newer SQLite, "SCAN TABLE attendance" on older ones
+                if (!FULL_TABLE.contains(name)) {
+                    assertFalse(name + " scans: " + statement.sql + " " + plan, step.startsWith("SCAN"));
+                }
+                if (expected == null) continue;
+                for (String index : expected) {
+                    if (step.contains(index)) usesExpected = true;
+                }
+            }
+        }
+        assertTrue(name + " uses none of " + Arrays.toString(expected), usesExpected);
+    }
+}
@@ -20,12 +20,15 @@ import com.ambe.supervisor.models.User;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.concurrent.Future;
+
 public class LoginActivity extends AppCompatActivity {
 
     private EditText etUsername, etPassword;
     private Button btnLogin;
     private ProgressBar progressBar;
     private boolean isPasswordVisible = false;
+    private Future<?> loginRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -81,7 +84,7 @@ public class LoginActivity extends AppCompatActivity {
 
         String deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
 
-        ApiService.login(username, password, deviceId, new ApiService.ApiCallback() {
+        loginRequest = ApiService.login(username, password, deviceId, new ApiService.ApiCallback() {
             @Override
             public void onSuccess(String response) {
                 runOnUiThread(() -> {
@@ -109,6 +112,7 @@ public class LoginActivity extends AppCompatActivity {
                         editor.putBoolean("isLoggedIn", true);
                         editor.putString("userId", user.getUserId());
                         editor.putString("assignedSiteId", assignedSites.length > 0 ? assignedSites[0] : "");
+                        editor.putString("assignedSiteIds", android.text.TextUtils.join(",", assignedSites));
                         editor.putString("name", user.getName());
                         editor.apply();
 
@@ -137,6 +141,14 @@ public class LoginActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (loginRequest != null) {
+            loginRequest.cancel(true);
+        }
+    }
+
     private void setLoading(boolean loading) {
         progressBar.setVisibility(loading ? View.VISIBLE : View.GONE);
         btnLogin.setEnabled(!loading);
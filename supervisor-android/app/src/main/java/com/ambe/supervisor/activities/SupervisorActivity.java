@@ -9,9 +9,6 @@ import android.content.BroadcastReceiver;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Bundle;
@@ -41,6 +38,7 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import com.ambe.supervisor.R;
 import com.ambe.supervisor.adapters.EmployeeAdapter;
 import com.ambe.supervisor.api.ApiService;
+import com.ambe.supervisor.api.ResponseParsers;
 import com.ambe.supervisor.models.AttendanceRecord;
 import com.ambe.supervisor.models.Employee;
 import com.ambe.supervisor.models.Site;
@@ -50,6 +48,9 @@ import com.ambe.supervisor.database.LocationLogEntity;
 import com.ambe.supervisor.services.LocationService;
 import com.ambe.supervisor.utils.GeofenceHelper;
 import com.ambe.supervisor.utils.NetworkUtils;
+import com.ambe.supervisor.utils.PhotoProcessor;
+import com.ambe.supervisor.utils.PhotoStore;
+import com.ambe.supervisor.workers.MaintenanceWorker;
 import com.ambe.supervisor.workers.SyncWorker;
 
 import androidx.work.OneTimeWorkRequest;
@@ -57,16 +58,19 @@ import androidx.work.WorkManager;
 import androidx.work.WorkInfo;
 
 import android.provider.Settings;
-import android.os.Environment;
 import androidx.core.content.FileProvider;
 import java.io.File;
 import java.io.IOException;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.Date;
 import java.util.Locale;
 import java.text.SimpleDateFormat;
@@ -104,10 +108,12 @@ import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 
-public class SupervisorActivity extends AppCompatActivity implements EmployeeAdapter.OnAttendanceActionListener {
+public class SupervisorActivity extends AppCompatActivity implements EmployeeAdapter.OnAttendanceActionListener, PhotoProcessor.Listener {
 
     private static final int PERMISSION_REQUEST_CODE = 100;
     private static final int REQUEST_CHECK_SETTINGS = 101;
+    // Roster fetches in flight at once; the rest of the API pool stays free for other calls
+    private static final int MAX_CONCURRENT_ROSTER_FETCHES = 2;
 
     private TextView tvSiteName, tvGeoStatus, tvDate, tvWorkerCount, tvSyncStatus;
     private EditText etSearch;
@@ -134,11 +140,14 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
     private AppDatabase db; // Replaced DatabaseHelper
     // private LocationCallback locationCallback; // Moved to Service
     private String currentPhotoPath;
-    private String lastSyncTime = null; // For efficient polling
+    private final Map<String, String> attendanceCursors = new ConcurrentHashMap<>(); // site_date -> last seen server updatedAt
     private boolean initialSyncDone = false;
+    private int pendingCount = 0; // Unsynced attendance rows, kept current by observePendingCount()
 
     private SharedPreferences prefs;
     private Socket mSocket;
+    private final List<Future<?>> pendingRequests = new ArrayList<>(); // In-flight API calls, cancelled in onDestroy
+    private PhotoProcessor photoProcessor; // Camera results are processed off the UI thread
 
     private final BroadcastReceiver locationReceiver = new BroadcastReceiver() {
         @Override
@@ -171,159 +180,100 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
         new ActivityResultContracts.StartActivityForResult(),
         result -> {
             if (result.getResultCode() == RESULT_OK) {
+                if (activeEmployee == null) return;
                 try {
-                    // 1. Calculate optimal inSampleSize to prevent OOM
-                    // Target: Max 800px dimension (Safer for low-end devices)
-                    android.graphics.BitmapFactory.Options options = new android.graphics.BitmapFactory.Options();
-                    options.inJustDecodeBounds = true;
-                    android.graphics.BitmapFactory.decodeFile(currentPhotoPath, options);
-                    
-                    int photoW = options.outWidth;
-                    int photoH = options.outHeight;
-                    int scaleFactor = 1;
-                    
-                    // Aggressive Downscaling: Target ~800px
-                    while (photoW / 2 >= 800 || photoH / 2 >= 800) {
-                        photoW /= 2;
-                        photoH /= 2;
-                        scaleFactor *= 2;
-                    }
-
-                    // 2. Decode with inSampleSize and Mutable
-                    options.inJustDecodeBounds = false;
-                    options.inSampleSize = scaleFactor;
-                    options.inMutable = true; 
-                    // Try RGB_565 first for memory saving (no transparency needed for photos)
-                    options.inPreferredConfig = Bitmap.Config.RGB_565;
-
-                    Bitmap imageBitmap = null;
-                    boolean decoded = false;
-                    int attempts = 0;
-                    
-                    while (!decoded && attempts < 3) {
-                        try {
-                            imageBitmap = android.graphics.BitmapFactory.decodeFile(currentPhotoPath, options);
-                            if (imageBitmap != null) decoded = true;
-                        } catch (OutOfMemoryError e) {
-                            // Emergency Fallback: Try 2x smaller
-                            scaleFactor *= 2;
-                            options.inSampleSize = scaleFactor;
-                            attempts++;
+                    // Determine IN/OUT based on Geofence
+                    String type = "IN";
+                    if (currentSite != null && currentLocation != null) {
+                        if (!GeofenceHelper.isWithinSite(currentLocation.getLatitude(), currentLocation.getLongitude(), currentSite)) {
+                            // REJECT ATTENDANCE
+                            new File(currentPhotoPath).delete();
+                            Toast.makeText(SupervisorActivity.this, "Attendance Rejected: You are Out of Range", Toast.LENGTH_LONG).show();
+                            return;
                         }
                     }
 
-                    if (activeEmployee != null && imageBitmap != null) {
-                        try {
-                            // 3. Watermark directly
-                            String locText = "Loc: " + (currentLocation != null ? 
-                                String.format(Locale.US, "%.5f, %.5f", currentLocation.getLatitude(), currentLocation.getLongitude()) : "Unknown");
-                            String dateTimeText = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
-                            
-                            watermarkImageInPlace(imageBitmap, locText, dateTimeText);
-
-                            // 4. Save BACK to file (Overwrite with smaller, watermarked version)
-                            // This prevents OOM and DB bloat
-                            try (java.io.FileOutputStream out = new java.io.FileOutputStream(currentPhotoPath)) {
-                                imageBitmap.compress(Bitmap.CompressFormat.JPEG, 60, out); // Quality 60 is sufficient
-                            }
-                            
-                            String time = new SimpleDateFormat("hh:mm a", Locale.US).format(new Date());
-                            String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
-                            
-                            // Determine IN/OUT based on Geofence
-                            String type = "IN";
-                            if (currentSite != null && currentLocation != null) {
-                                if (!GeofenceHelper.isWithinRange(currentLocation.getLatitude(), currentLocation.getLongitude(), 
-                                        currentSite.getLatitude(), currentSite.getLongitude(), currentSite.getGeofenceRadius())) {
-                                    // REJECT ATTENDANCE
-                                    Toast.makeText(SupervisorActivity.this, "Attendance Rejected: You are Out of Range", Toast.LENGTH_LONG).show();
-                                    return;
-                                }
-                            }
-        
-                            String deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
-        
-                            // 5. Save PATH to DB (Not Base64)
-                            final String finalType = type;
-                            final String finalPhotoPath = currentPhotoPath; // Store Path
-                            
-                            new Thread(() -> {
-                                AttendanceEntity entity = new AttendanceEntity(
-                                    activeEmployee.getId(),
-                                    assignedSiteId,
-                                    date,
-                                    time,
-                                    "P",
-                                    finalType,
-                                    currentLocation != null ? currentLocation.getLatitude() : 0,
-                                    currentLocation != null ? currentLocation.getLongitude() : 0,
-                                    finalPhotoPath, // Path
-                                    deviceId
-                                );
-                                // Add Supervisor Name
-                                entity.supervisorName = supervisorName;
-                                
-                                db.attendanceDao().insert(entity);
-                                
-                                runOnUiThread(() -> {
-                                    AttendanceRecord record = new AttendanceRecord(
-                                        String.valueOf(System.currentTimeMillis()),
-                                        activeEmployee.getId(),
-                                        date,
-                                        "P",
-                                        time,
-                                        finalPhotoPath, // Path
-                                        false,
-                                        false
-                                    );
-                                    attendanceMap.put(activeEmployee.getId(), record);
-                                    adapter.notifyDataSetChanged();
-                                    updateCounts();
-                                    activeEmployee = null;
-                                    
-                                    // Trigger Sync Immediately
-                                    syncData();
-                                });
-                            }).start();
-                        } finally {
-                            // Recycle immediately
-                            if (imageBitmap != null && !imageBitmap.isRecycled()) {
-                                imageBitmap.recycle();
-                            }
-                        }
-                    } else {
-                         Toast.makeText(this, "Failed to process image (Low Memory)", Toast.LENGTH_SHORT).show();
-                    }
+                    String locText = "Loc: " + (currentLocation != null ?
+                        String.format(Locale.US, "%.5f, %.5f", currentLocation.getLatitude(), currentLocation.getLongitude()) : "Unknown");
+                    String dateTimeText = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
+                    String time = new SimpleDateFormat("hh:mm a", Locale.US).format(new Date());
+                    String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+                    String deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
+
+                    // Save PATH to DB (Not Base64) once the photo is processed
+                    AttendanceEntity entity = new AttendanceEntity(
+                        activeEmployee.getId(),
+                        assignedSiteId,
+                        date,
+                        time,
+                        "P",
+                        type,
+                        currentLocation != null ? currentLocation.getLatitude() : 0,
+                        currentLocation != null ? currentLocation.getLongitude() : 0,
+                        currentPhotoPath, // Path
+                        deviceId
+                    );
+                    // Add Supervisor Name
+                    entity.supervisorName = supervisorName;
+
+                    // Optimistic row: shown as processing until the pipeline reports back
+                    AttendanceRecord record = new AttendanceRecord(
+                        String.valueOf(System.currentTimeMillis()),
+                        activeEmployee.getId(),
+                        date,
+                        "P",
+                        time,
+                        currentPhotoPath, // Path
+                        false,
+                        false
+                    );
+                    record.setProcessing(true);
+                    attendanceMap.put(activeEmployee.getId(), record);
+                    adapter.notifyDataSetChanged();
+                    String activeEmployeeId = activeEmployee.getId();
+                    activeEmployee = null;
+
+                    // Extra fields above the original location/date lines; missing ones are skipped
+                    photoProcessor.submit(new PhotoProcessor.Job(currentPhotoPath, entity, record,
+                        "Emp: " + activeEmployeeId,
+                        currentSite != null ? "Site: " + currentSite.getName() : null,
+                        supervisorName != null ? "By: " + supervisorName : null,
+                        locText,
+                        dateTimeText));
                 } catch (Exception e) {
                     e.printStackTrace();
                     Toast.makeText(this, "Error processing image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 }
+            } else if (currentPhotoPath != null) {
+                // Cancelled: drop the empty capture now rather than waiting for the store's GC
+                new File(currentPhotoPath).delete();
             }
         }
     );
 
-    // Replaces scaleBitmapDown
-    private void watermarkImageInPlace(Bitmap src, String loc, String date) {
-        Canvas canvas = new Canvas(src);
-        // No need to drawBitmap, we are drawing ON the bitmap
-        
-        int w = src.getWidth();
-        int h = src.getHeight();
-        
-        Paint paint = new Paint();
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(w * 0.04f); // 4% of width
-        paint.setAntiAlias(true);
-        paint.setShadowLayer(5.0f, 2.0f, 2.0f, Color.BLACK);
-        
-        // Draw Location
-        float x = 20;
-        float y = h - (w * 0.12f);
-        canvas.drawText(loc, x, y, paint);
-        
-        // Draw Date
-        y += (w * 0.05f);
-        canvas.drawText(date, x, y, paint);
+    @Override
+    public void onPhotoProcessed(PhotoProcessor.Job job) {
+        if (isDestroyed()) return;
+        job.record.setProcessing(false);
+        // Undone while processing: the row is saved but stays off the list, like any undo
+        if (attendanceMap.get(job.entity.employeeId) == job.record) {
+            adapter.notifyDataSetChanged();
+        }
+        updateCounts();
+
+        // Trigger Sync Immediately
+        syncData();
+    }
+
+    @Override
+    public void onPhotoFailed(PhotoProcessor.Job job, String error) {
+        if (isDestroyed()) return;
+        if (attendanceMap.get(job.entity.employeeId) == job.record) {
+            attendanceMap.remove(job.entity.employeeId);
+            adapter.notifyDataSetChanged();
+            updateCounts();
+        }
+        Toast.makeText(this, error, Toast.LENGTH_SHORT).show();
     }
 
     @Override
@@ -334,6 +284,7 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
         prefs = getSharedPreferences("AmbeSupervisorPrefs", MODE_PRIVATE);
 
         db = AppDatabase.getDatabase(this);
+        photoProcessor = new PhotoProcessor(this, db, this);
 
         assignedSiteId = getIntent().getStringExtra("ASSIGNED_SITE_ID");
         userId = getIntent().getStringExtra("USER_ID");
@@ -355,10 +306,17 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
 
         initViews();
         setupRecyclerView();
+
+        // Pending badge follows the attendance table through Room's invalidation tracker
+        db.attendanceDao().observePendingCount().observe(this, count -> {
+            pendingCount = count != null ? count : 0;
+            renderPendingCount();
+        });
         checkPermissions(); // This will start service if permissions granted
         loadData();
         checkName();
         startAutoRefresh();
+        MaintenanceWorker.schedule(this);
         
         tvDate.setText(new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date()));
 
@@ -419,6 +377,14 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
     protected void onResume() {
         super.onResume();
         checkLocationEnabled();
+        // Per-fix updates while the screen is showing them
+        LocationService.setUiVisible(this, true);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        LocationService.setUiVisible(this, false);
     }
 
     private void checkLocationEnabled() {
@@ -490,6 +456,14 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        handler.removeCallbacks(refreshRunnable);
+        photoProcessor.shutdown();
+        synchronized (pendingRequests) {
+            for (Future<?> request : pendingRequests) {
+                request.cancel(true);
+            }
+            pendingRequests.clear();
+        }
         LocalBroadcastManager.getInstance(this).unregisterReceiver(locationReceiver);
         unregisterReceiver(gpsReceiver);
         if (mSocket != null) {
@@ -500,6 +474,13 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
         }
     }
 
+    private void track(Future<?> request) {
+        synchronized (pendingRequests) {
+            pendingRequests.removeIf(Future::isDone);
+            pendingRequests.add(request);
+        }
+    }
+
     private void checkName() {
         if (supervisorName == null || supervisorName.isEmpty() || supervisorName.contains("Supervisor")) {
             AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -536,12 +517,8 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
             public void run() {
                 refreshAttendance();
                 // Auto-sync if online
-                if (NetworkUtils.isNetworkAvailable(SupervisorActivity.this)) {
-                    new Thread(() -> {
-                        if (!db.attendanceDao().getUnsyncedAttendance().isEmpty()) {
-                            runOnUiThread(() -> syncData());
-                        }
-                    }).start();
+                if (pendingCount > 0 && NetworkUtils.isNetworkAvailable(SupervisorActivity.this)) {
+                    syncData();
                 }
                 handler.postDelayed(this, 60000); // Refresh every 60 seconds (Long Polling)
             }
@@ -552,41 +529,24 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
     private void refreshAttendance() {
         if (assignedSiteId == null) return;
         String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+        // Cursor is per site and day, so a new day (or site) starts with a full resync
+        String cursorKey = assignedSiteId + "_" + date;
+        String cursor = attendanceCursors.get(cursorKey);
         
-        // 1. Load from API (Force Full Refresh - No updatedAfter)
-        ApiService.getAttendanceSince(assignedSiteId, date, null, new ApiService.ApiCallback() {
+        // 1. Load from API (only rows changed since the cursor, or everything when there is none)
+        track(ApiService.getAttendanceSince(assignedSiteId, date, cursor, new ApiService.ParsedCallback<ResponseParsers.AttendanceResult>() {
             @Override
-            public void onSuccess(String response) {
+            public void onSuccess(ResponseParsers.AttendanceResult result) {
                 try {
-                    // Update lastSyncTime to now (ISO format)
-                    lastSyncTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US).format(new Date());
-
-                    JSONArray records = new JSONArray(response);
-                    if (records.length() > 0) {
-                        for (int i = 0; i < records.length(); i++) {
-                            JSONObject r = records.getJSONObject(i);
-                            
-                            // FILTER: Only show attendance for TODAY
-                            String recordDate = r.getString("date");
-                            if (!recordDate.equals(date)) {
-                                continue;
-                            }
-
-                            String empId = r.getString("employeeId");
-                            boolean isLocked = r.optBoolean("isLocked", true); // Default to true for synced records
+                    // Parser already dropped rows that are not for TODAY
+                    for (AttendanceRecord record : result.records) {
+                        attendanceMap.put(record.getEmployeeId(), record);
+                    }
+                    String newCursor = result.latestUpdatedAt;
 
-                            AttendanceRecord record = new AttendanceRecord(
-                                r.optString("id", ""),
-                                empId,
-                                r.getString("date"),
-                                r.getString("status"),
-                                r.optString("checkInTime", ""),
-                                r.optString("photoUrl", null),
-                                true, // isSynced
-                                isLocked  // isLocked
-                            );
-                            attendanceMap.put(empId, record);
-                        }
+                    // Overlapping refreshes (timer + socket) may finish out of order, keep the newest cursor
+                    if (newCursor != null) {
+                        attendanceCursors.merge(cursorKey, newCursor, (a, b) -> a.compareTo(b) >= 0 ? a : b);
                     }
                     
                     // 2. Overlay Local Data (ALL records for date, to ensure synced ones persist offline)
@@ -630,6 +590,13 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
             }
             @Override
             public void onError(String error) {
+                // Server rejected the cursor: drop it and fall back to a full resync
+                if (cursor != null && isCursorRejected(error)) {
+                    attendanceCursors.remove(cursorKey);
+                    handler.post(SupervisorActivity.this::refreshAttendance);
+                    return;
+                }
+
                 // If API fails (Offline), load ALL local data for today
                 new Thread(() -> {
                     List<AttendanceEntity> localRecords = db.attendanceDao().getAttendanceByDate(date);
@@ -653,7 +620,11 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
                     });
                 }).start();
             }
-        });
+        }));
+    }
+
+    private static boolean isCursorRejected(String error) {
+        return error != null && (error.startsWith("Server Error 400") || error.startsWith("Server Error 410"));
     }
 
     private void initViews() {
@@ -738,11 +709,7 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
 
     private void checkGeofence() {
         if (currentLocation != null && currentSite != null) {
-            float[] results = new float[1];
-            Location.distanceBetween(currentLocation.getLatitude(), currentLocation.getLongitude(),
-                    currentSite.getLatitude(), currentSite.getLongitude(), results);
-            float distanceInMeters = results[0];
-            boolean inRange = distanceInMeters <= currentSite.getGeofenceRadius();
+            boolean inRange = GeofenceHelper.isWithinSite(currentLocation.getLatitude(), currentLocation.getLongitude(), currentSite);
             updateGeoStatus(inRange);
         }
     }
@@ -754,7 +721,7 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
             if (assignedSiteId != null) {
                 com.ambe.supervisor.database.SiteEntity localSite = db.siteDao().getSiteById(assignedSiteId);
                 if (localSite != null) {
-                    currentSite = new Site(localSite.id, localSite.name, localSite.location, localSite.latitude, localSite.longitude, localSite.geofenceRadius);
+                    currentSite = new Site(localSite.id, localSite.name, localSite.location, localSite.latitude, localSite.longitude, localSite.geofenceRadius, localSite.boundary);
                     runOnUiThread(() -> {
                         if (tvSiteName != null) {
                             tvSiteName.setText(currentSite.getName());
@@ -788,89 +755,100 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
     }
 
     private void fetchSitesFromApi() {
-        ApiService.getSites(new ApiService.ApiCallback() {
+        track(ApiService.getSites(new ApiService.ParsedCallback<List<com.ambe.supervisor.database.SiteEntity>>() {
             @Override
-            public void onSuccess(String response) {
-                try {
-                    JSONArray sites = new JSONArray(response);
-                    List<com.ambe.supervisor.database.SiteEntity> entities = new ArrayList<>();
-                    for (int i = 0; i < sites.length(); i++) {
-                        JSONObject s = sites.getJSONObject(i);
-                        entities.add(new com.ambe.supervisor.database.SiteEntity(
-                            s.getString("id"),
-                            s.getString("name"),
-                            s.getString("location"),
-                            s.getDouble("latitude"),
-                            s.getDouble("longitude"),
-                            s.getInt("geofenceRadius")
-                        ));
-                        
-                        if (s.getString("id").equals(assignedSiteId)) {
-                            currentSite = new Site(
-                                s.getString("id"),
-                                s.getString("name"),
-                                s.getString("location"),
-                                s.getDouble("latitude"),
-                                s.getDouble("longitude"),
-                                s.getInt("geofenceRadius")
-                            );
-                            runOnUiThread(() -> {
-                                tvSiteName.setText(currentSite.getName());
-                                checkGeofence();
-                            });
-                        }
+            public void onSuccess(List<com.ambe.supervisor.database.SiteEntity> entities) {
+                for (com.ambe.supervisor.database.SiteEntity s : entities) {
+                    if (s.id.equals(assignedSiteId)) {
+                        currentSite = new Site(s.id, s.name, s.location, s.latitude, s.longitude, s.geofenceRadius, s.boundary);
+                        runOnUiThread(() -> {
+                            tvSiteName.setText(currentSite.getName());
+                            checkGeofence();
+                        });
                     }
-                    // Save to DB
-                    new Thread(() -> db.siteDao().insertAll(entities)).start();
-                } catch (Exception e) { e.printStackTrace(); }
+                }
+                // Save to DB (already on a background thread)
+                db.siteDao().insertAll(entities);
             }
             @Override
             public void onError(String error) {}
-        });
+        }));
     }
 
     private void fetchEmployeesFromApi() {
-        ApiService.getEmployees(new ApiService.ApiCallback() {
+        // Rosters of every assigned site are cached, the screen shows the primary one.
+        // One loader feeds the shared API pool a few sites at a time, so a supervisor with
+        // many sites never fills its request queue.
+        List<String> siteIds = getAssignedSiteIds();
+        new Thread(() -> {
+            ArrayDeque<Future<?>> inFlight = new ArrayDeque<>();
+            try {
+                for (String siteId : siteIds) {
+                    if (inFlight.size() == MAX_CONCURRENT_ROSTER_FETCHES) awaitFetch(inFlight.poll());
+                    if (isDestroyed()) return;
+                    Future<?> fetch = fetchSiteRoster(siteId);
+                    track(fetch);
+                    inFlight.add(fetch);
+                }
+                while (!inFlight.isEmpty()) awaitFetch(inFlight.poll());
+            } catch (CancellationException | InterruptedException e) {
+                // Activity destroyed: the remaining fetches were cancelled in onDestroy
+            }
+        }).start();
+    }
+
+    // Waits for one roster fetch; its own callback has already reported success or failure
+    private static void awaitFetch(Future<?> fetch) throws InterruptedException {
+        try {
+            fetch.get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private List<String> getAssignedSiteIds() {
+        List<String> siteIds = new ArrayList<>();
+        for (String siteId : prefs.getString("assignedSiteIds", "").split(",")) {
+            if (!siteId.isEmpty() && !siteIds.contains(siteId)) siteIds.add(siteId);
+        }
+        // Sessions from before multi-site login only stored the primary site
+        if (assignedSiteId != null && !assignedSiteId.isEmpty() && !siteIds.contains(assignedSiteId)) {
+            siteIds.add(0, assignedSiteId);
+        }
+        return siteIds;
+    }
+
+    // Called off the UI thread: reads the stored validators, then queues the conditional fetch
+    private Future<?> fetchSiteRoster(String siteId) {
+        String stateKey = "roster_" + siteId;
+        com.ambe.supervisor.database.SyncStateEntity state = db.syncStateDao().get(stateKey);
+        String etag = state != null ? state.etag : null;
+        String lastModified = state != null ? state.lastModified : null;
+
+        return ApiService.getSiteRoster(siteId, etag, lastModified, new ApiService.ParsedCallback<ApiService.RosterResult>() {
             @Override
-            public void onSuccess(String response) {
-                try {
-                    JSONArray emps = new JSONArray(response);
-                    List<com.ambe.supervisor.database.EmployeeEntity> entities = new ArrayList<>();
+            public void onSuccess(ApiService.RosterResult result) {
+                // 304: roster unchanged, the local copy shown by loadData() is current
+                if (result.notModified) return;
+
+                // Save to DB (already on a background thread), roster and validator together
+                db.runInTransaction(() -> {
+                    db.employeeDao().replaceSite(siteId, result.employees);
+                    db.syncStateDao().upsert(new com.ambe.supervisor.database.SyncStateEntity(
+                        stateKey, result.etag, result.lastModified, System.currentTimeMillis()));
+                });
+
+                if (!siteId.equals(assignedSiteId)) return;
+                List<Employee> employees = new ArrayList<>(result.employees.size());
+                for (com.ambe.supervisor.database.EmployeeEntity e : result.employees) {
+                    employees.add(new Employee(e.id, e.biometricCode, e.name, e.role, e.siteId, e.photoUrl, e.status));
+                }
+                runOnUiThread(() -> {
                     allEmployees.clear();
-                    
-                    for (int i = 0; i < emps.length(); i++) {
-                        JSONObject e = emps.getJSONObject(i);
-                        entities.add(new com.ambe.supervisor.database.EmployeeEntity(
-                            e.getString("id"),
-                            e.getString("biometricCode"),
-                            e.getString("name"),
-                            e.getString("role"),
-                            e.getString("siteId"),
-                            e.optString("photoUrl"),
-                            e.getString("status")
-                        ));
-
-                        if (e.getString("siteId").equals(assignedSiteId)) {
-                            allEmployees.add(new Employee(
-                                e.getString("id"),
-                                e.getString("biometricCode"),
-                                e.getString("name"),
-                                e.getString("role"),
-                                e.getString("siteId"),
-                                e.optString("photoUrl"),
-                                e.getString("status")
-                            ));
-                        }
-                    }
-                    
-                    runOnUiThread(() -> {
-                        filterEmployees("");
-                        updateCounts();
-                    });
-
-                    // Save to DB
-                    new Thread(() -> db.employeeDao().insertAll(entities)).start();
-                } catch (Exception e) { e.printStackTrace(); }
+                    allEmployees.addAll(employees);
+                    filterEmployees("");
+                    updateCounts();
+                });
             }
             @Override
             public void onError(String error) {}
@@ -894,22 +872,19 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
 
     private void updateCounts() {
         tvWorkerCount.setText(allEmployees.size() + " Workers");
-        
-        // Count unsynced from Room
-        new Thread(() -> {
-            long pendingCount = db.attendanceDao().getUnsyncedAttendance().size();
-            runOnUiThread(() -> {
-                tvSyncStatus.setText(pendingCount + " Pending");
-                
-                if (pendingCount > 0) {
-                    btnFooterSync.setText("SYNC " + pendingCount + " RECORDS");
-                    btnFooterSync.setBackgroundColor(ContextCompat.getColor(SupervisorActivity.this, R.color.colorAccent));
-                } else {
-                    btnFooterSync.setText("ALL SYNCED");
-                    btnFooterSync.setBackgroundColor(0xFF333333);
-                }
-            });
-        }).start();
+        renderPendingCount();
+    }
+
+    private void renderPendingCount() {
+        tvSyncStatus.setText(pendingCount + " Pending");
+
+        if (pendingCount > 0) {
+            btnFooterSync.setText("SYNC " + pendingCount + " RECORDS");
+            btnFooterSync.setBackgroundColor(ContextCompat.getColor(SupervisorActivity.this, R.color.colorAccent));
+        } else {
+            btnFooterSync.setText("ALL SYNCED");
+            btnFooterSync.setBackgroundColor(0xFF333333);
+        }
     }
 
     private void proceedToCamera(Employee employee) {
@@ -939,8 +914,7 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
     public void onMarkPresent(Employee employee) {
         // STRICT GEOFENCE CHECK
         if (currentSite != null && currentLocation != null) {
-             if (!GeofenceHelper.isWithinRange(currentLocation.getLatitude(), currentLocation.getLongitude(), 
-                    currentSite.getLatitude(), currentSite.getLongitude(), currentSite.getGeofenceRadius())) {
+             if (!GeofenceHelper.isWithinSite(currentLocation.getLatitude(), currentLocation.getLongitude(), currentSite)) {
                  
                  new AlertDialog.Builder(this)
                     .setTitle("Out of Range")
@@ -966,7 +940,7 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
             String month = dateParts[1];
             String today = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
 
-            ApiService.checkEmployeeAttendance(employee.getId(), month, year, new ApiService.ApiCallback() {
+            track(ApiService.checkEmployeeAttendance(employee.getId(), month, year, new ApiService.ApiCallback() {
                 @Override
                 public void onSuccess(String response) {
                     progress.dismiss();
@@ -1001,27 +975,15 @@ public class SupervisorActivity extends AppCompatActivity implements EmployeeAda
                     progress.dismiss();
                     SupervisorActivity.this.runOnUiThread(() -> proceedToCamera(employee));
                 }
-            });
+            }));
         } else {
             proceedToCamera(employee);
         }
     }
 
     private File createImageFile() throws IOException {
-        // Create an image file name
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
-        String imageFileName = "JPEG_" + timeStamp + "_";
-        File storageDir = getExternalFilesDir(Environment.DIRECTORY_PICTURES);
-        if (storageDir == null) {
-            storageDir = getFilesDir(); // Fallback to internal storage
-        }
-        File image = File.createTempFile(
-            imageFileName,  /* prefix */
-            ".jpg",         /* suffix */
-            storageDir      /* directory */
-        );
-    
-        // Save a file: path for use with ACTION_VIEW intents
+        // Camera output goes to the store's capture area; the processed photo is stored by content hash
+        File image = new PhotoStore(this).newCaptureFile();
         currentPhotoPath = image.getAbsolutePath();
         return image;
     }
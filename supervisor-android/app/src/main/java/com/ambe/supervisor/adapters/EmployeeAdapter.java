@@ -62,7 +62,7 @@ public class EmployeeAdapter extends RecyclerView.Adapter<EmployeeAdapter.Employ
         if (isPresent) {
             holder.ivAvatar.setBackgroundResource(R.drawable.bg_avatar_present);
             holder.layoutCheckTime.setVisibility(View.VISIBLE);
-            holder.tvCheckTime.setText(record.getCheckInTime());
+            holder.tvCheckTime.setText(record.isProcessing() ? "Processing..." : record.getCheckInTime());
             holder.btnMarkPresent.setVisibility(View.GONE);
             holder.btnUndo.setVisibility(View.VISIBLE);
         } else {
@@ -1,134 +1,253 @@
 package com.ambe.supervisor.api;
 
+import android.os.Handler;
+import android.os.Looper;
+
 import org.json.JSONObject;
+import com.ambe.supervisor.database.EmployeeEntity;
+import com.ambe.supervisor.database.SiteEntity;
 import com.ambe.supervisor.utils.AppConfig;
+import com.ambe.supervisor.utils.PhotoEncoder;
+import com.google.gson.stream.JsonReader;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ApiService {
 
+    // Fixed buffer/chunk size for streamed request bodies
+    private static final int STREAM_CHUNK_SIZE = 8 * 1024;
+    private static final int READ_BUFFER_SIZE = 4 * 1024;
+
+    // Roster paging; the page cap guards against a backend that ignores paging
+    private static final int ROSTER_PAGE_SIZE = 200;
+    private static final int ROSTER_MAX_PAGES = 50;
+
+    // One bounded pool for all async calls instead of a new Thread per request
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final int MAX_QUEUED_REQUESTS = 64;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    static {
+        // Keep-alive connections to the API host are pooled and reused by HttpURLConnection
+        // as long as every response body is read to the end and closed (see readResponse)
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_CONCURRENT_REQUESTS));
+    }
+
     public interface ApiCallback {
         void onSuccess(String response);
         void onError(String error);
     }
 
-    public static void login(String username, String password, String deviceId, ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                JSONObject jsonBody = new JSONObject();
-                jsonBody.put("username", username);
-                jsonBody.put("password", password);
-                jsonBody.put("deviceId", deviceId);
-                jsonBody.put("deviceName", android.os.Build.MANUFACTURER + " " + android.os.Build.MODEL);
-
-                String response = executeRequest("/supervisor/login", "POST", jsonBody.toString());
-                if (response != null) {
-                    callback.onSuccess(response);
-                } else {
-                    callback.onError("Login failed");
+    public interface ParsedCallback<T> {
+        void onSuccess(T result);
+        void onError(String error);
+    }
+
+    // Writes a request body directly to the connection, so large payloads are never held in memory
+    public interface RequestBodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // Reads a response straight off the connection's stream (see ResponseParsers)
+    public interface ResponseParser<T> {
+        T parse(JsonReader reader) throws IOException;
+    }
+
+    public static Future<?> login(String username, String password, String deviceId, ApiCallback callback) {
+        return submit("Login failed", callback, () -> {
+            JSONObject jsonBody = new JSONObject();
+            jsonBody.put("username", username);
+            jsonBody.put("password", password);
+            jsonBody.put("deviceId", deviceId);
+            jsonBody.put("deviceName", android.os.Build.MANUFACTURER + " " + android.os.Build.MODEL);
+
+            return executeRequest("/supervisor/login", "POST", jsonBody.toString());
+        });
+    }
+
+    public static Future<?> getSites(ParsedCallback<List<SiteEntity>> callback) {
+        return submit("Failed to fetch sites", callback, () -> executeParsedRequest("/sites", ResponseParsers.sites()));
+    }
+
+    // Result of a conditional, paged roster fetch for one site
+    public static class RosterResult {
+        public boolean notModified; // Server returned 304: keep the local roster as is
+        public final List<EmployeeEntity> employees = new ArrayList<>();
+        public String etag;
+        public String lastModified;
+    }
+
+    // Fetches one site's roster page by page. The stored validators go on the first request,
+    // so an unchanged roster is answered with a 304 and nothing is parsed.
+    public static Future<?> getSiteRoster(String siteId, String etag, String lastModified, ParsedCallback<RosterResult> callback) {
+        return submit("Failed to fetch employees", callback, () -> {
+            RosterResult result = new RosterResult();
+            for (int page = 0; page < ROSTER_MAX_PAGES; page++) {
+                String endpoint = "/employees?site=" + URLEncoder.encode(siteId, "UTF-8")
+                        + "&page=" + page + "&limit=" + ROSTER_PAGE_SIZE;
+                HttpURLConnection conn = openConnection(endpoint, "GET");
+                if (page == 0) {
+                    if (etag != null) conn.setRequestProperty("If-None-Match", etag);
+                    if (lastModified != null) conn.setRequestProperty("If-Modified-Since", lastModified);
+                }
+
+                int responseCode = conn.getResponseCode();
+                if (page == 0 && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    drain(conn.getErrorStream());
+                    result.notModified = true;
+                    return result;
+                }
+                if (responseCode < 200 || responseCode >= 300) {
+                    throw readError(conn, responseCode);
                 }
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
+
+                String pageEtag = conn.getHeaderField("ETag");
+                if (page == 0) {
+                    result.etag = pageEtag;
+                    result.lastModified = conn.getHeaderField("Last-Modified");
+                } else if (result.etag != null && !result.etag.equals(pageEtag)) {
+                    // Roster changed while paging: keep what we got but don't trust the validators
+                    result.etag = null;
+                    result.lastModified = null;
+                }
+
+                List<EmployeeEntity> rows = readParsed(conn, ResponseParsers.employees(siteId));
+                result.employees.addAll(rows);
+                if (rows.size() < ROSTER_PAGE_SIZE) break;
             }
-        }).start();
+            return result;
+        });
     }
 
-    public static void getSites(ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                String response = executeRequest("/sites", "GET", null);
-                if (response != null) callback.onSuccess(response);
-                else callback.onError("Failed to fetch sites");
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
-            }
-        }).start();
+    public static String syncAttendanceBlocking(RequestBodyWriter body) throws Exception {
+        return executeStreamingRequest("/attendance/sync", "POST", "application/json", body);
     }
 
-    public static void getEmployees(ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                String response = executeRequest("/employees", "GET", null);
-                if (response != null) callback.onSuccess(response);
-                else callback.onError("Failed to fetch employees");
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
-            }
-        }).start();
+    // True if the server already stores a photo with this content hash
+    public static boolean hasPhotoBlocking(String hash) throws Exception {
+        HttpURLConnection conn = openConnection("/photos/" + hash, "HEAD");
+        int responseCode = conn.getResponseCode();
+        drain(conn.getErrorStream());
+        if (responseCode == HttpURLConnection.HTTP_OK) return true;
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) return false;
+        throw new Exception("Server Error " + responseCode);
     }
 
-    public static void syncAttendance(String jsonBody, ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                String response = executeRequest("/attendance/sync", "POST", jsonBody);
-                if (response != null) callback.onSuccess(response);
-                else callback.onError("Sync failed");
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
+    // Uploads the raw photo bytes, streamed from disk
+    // Content type follows the encoded format; ratio (0 if unknown) is recorded with the photo
+    public static String uploadPhotoBlocking(String hash, File file, float ratio) throws Exception {
+        String endpoint = "/photos/" + hash + (ratio > 0 ? String.format(Locale.US, "?ratio=%.4f", ratio) : "");
+        return executeStreamingRequest(endpoint, "PUT", PhotoEncoder.mimeType(file), out -> {
+            try (FileInputStream fis = new FileInputStream(file)) {
+                byte[] buffer = new byte[STREAM_CHUNK_SIZE];
+                int read;
+                while ((read = fis.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
             }
-        }).start();
+        });
     }
 
-    public static String syncAttendanceBlocking(String jsonBody) throws Exception {
-        return executeRequest("/attendance/sync", "POST", jsonBody);
+    // Delta-encoded tracks, see TrajectoryEncoder
+    public static String uploadLocationTracksBlocking(String jsonBody) throws Exception {
+        return executeRequest("/supervisor/location/batch", "POST", jsonBody);
     }
 
-    public static String logLocationBlocking(String jsonBody) throws Exception {
-        return executeRequest("/supervisor/location", "POST", jsonBody);
+    public static Future<?> checkEmployeeAttendance(String employeeId, String month, String year, ApiCallback callback) {
+        return submit("Failed to fetch attendance", callback, () -> {
+            String endpoint = "/attendance?employee=" + URLEncoder.encode(employeeId, "UTF-8")
+                    + "&month=" + URLEncoder.encode(month, "UTF-8") + "&year=" + URLEncoder.encode(year, "UTF-8");
+            return executeRequest(endpoint, "GET", null);
+        });
     }
 
-    public static void logLocation(String jsonBody, ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                String response = executeRequest("/supervisor/location", "POST", jsonBody);
-                if (response != null) callback.onSuccess(response);
-                else callback.onError("Log failed");
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
+    // Records for date only; latestUpdatedAt covers every returned row
+    public static Future<?> getAttendanceSince(String siteId, String date, String updatedAfter, ParsedCallback<ResponseParsers.AttendanceResult> callback) {
+        return submit("Failed to fetch attendance", callback, () -> {
+            // Assuming date is YYYY-MM-DD
+            String[] parts = date.split("-");
+            String month = parts[1];
+            String year = parts[0];
+            String endpoint = "/attendance?site=" + URLEncoder.encode(siteId, "UTF-8")
+                    + "&month=" + URLEncoder.encode(month, "UTF-8") + "&year=" + URLEncoder.encode(year, "UTF-8");
+            if (updatedAfter != null) {
+                // ISO cursor: a "+hh:mm" offset must not arrive as a space
+                endpoint += "&updatedAfter=" + URLEncoder.encode(updatedAfter, "UTF-8");
             }
-        }).start();
+            return executeParsedRequest(endpoint, ResponseParsers.attendance(date));
+        });
     }
 
-    public static void getAttendance(String siteId, String date, ApiCallback callback) {
-        getAttendanceSince(siteId, date, null, callback);
+    private static Future<?> submit(String failureMessage, ApiCallback callback, Callable<String> request) {
+        return submit(failureMessage, new ParsedCallback<String>() {
+            @Override
+            public void onSuccess(String result) { callback.onSuccess(result); }
+            @Override
+            public void onError(String error) { callback.onError(error); }
+        }, request);
     }
 
-    public static void checkEmployeeAttendance(String employeeId, String month, String year, ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                String endpoint = "/attendance?employee=" + employeeId + "&month=" + month + "&year=" + year;
-                String response = executeRequest(endpoint, "GET", null);
-                if (response != null) callback.onSuccess(response);
-                else callback.onError("Failed to fetch attendance");
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
-            }
-        }).start();
-    }
-
-    public static void getAttendanceSince(String siteId, String date, String updatedAfter, ApiCallback callback) {
-        new Thread(() -> {
-            try {
-                // Assuming date is YYYY-MM-DD
-                String[] parts = date.split("-");
-                String month = parts[1];
-                String year = parts[0];
-                String endpoint = "/attendance?site=" + siteId + "&month=" + month + "&year=" + year;
-                if (updatedAfter != null) {
-                    endpoint += "&updatedAfter=" + updatedAfter;
+    // Runs a request on the shared pool. The callback is skipped once the returned Future is cancelled.
+    private static <T> Future<?> submit(String failureMessage, ParsedCallback<T> callback, Callable<T> request) {
+        try {
+            return EXECUTOR.submit(() -> {
+                try {
+                    T response = request.call();
+                    if (Thread.currentThread().isInterrupted()) return;
+                    if (response != null) callback.onSuccess(response);
+                    else callback.onError(failureMessage);
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) return;
+                    callback.onError(e.getMessage());
                 }
-                
-                String response = executeRequest(endpoint, "GET", null);
-                if (response != null) callback.onSuccess(response);
-                else callback.onError("Failed to fetch attendance");
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
-            }
-        }).start();
+            });
+        } catch (RejectedExecutionException e) {
+            // Still reported asynchronously: callers expect the callback after submit() returns
+            FutureTask<Void> rejected = new FutureTask<>(() -> callback.onError("Too many pending requests"), null);
+            MAIN_HANDLER.post(rejected);
+            return rejected;
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED_REQUESTS),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ApiService-" + threadCount.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1); // Stay behind the UI thread
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     private static String executeRequest(String endpoint, String method, String jsonBody) throws Exception {
@@ -147,27 +266,92 @@ public class ApiService {
             }
         }
 
+        return readResponse(conn);
+    }
+
+    private static String executeStreamingRequest(String endpoint, String method, String contentType, RequestBodyWriter body) throws Exception {
+        URL url = new URL(AppConfig.getBaseUrl() + "/api" + endpoint);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setRequestProperty("Content-Type", contentType);
+        conn.setConnectTimeout(30000);
+        conn.setReadTimeout(30000);
+
+        // Chunked mode: HttpURLConnection would otherwise buffer the whole body to compute Content-Length
+        conn.setDoOutput(true);
+        conn.setChunkedStreamingMode(STREAM_CHUNK_SIZE);
+        try (OutputStream os = new BufferedOutputStream(conn.getOutputStream(), STREAM_CHUNK_SIZE)) {
+            body.writeTo(os);
+        }
+
+        return readResponse(conn);
+    }
+
+    private static <T> T executeParsedRequest(String endpoint, ResponseParser<T> parser) throws Exception {
+        HttpURLConnection conn = openConnection(endpoint, "GET");
         int responseCode = conn.getResponseCode();
-        if (responseCode >= 200 && responseCode < 300) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), "utf-8"))) {
-                StringBuilder response = new StringBuilder();
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-                return response.toString();
-            }
-        } else {
-            StringBuilder errorResponse = new StringBuilder();
-            if (conn.getErrorStream() != null) {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getErrorStream(), "utf-8"))) {
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        errorResponse.append(responseLine.trim());
-                    }
-                }
+        if (responseCode < 200 || responseCode >= 300) {
+            throw readError(conn, responseCode);
+        }
+        return readParsed(conn, parser);
+    }
+
+    private static <T> T readParsed(HttpURLConnection conn, ResponseParser<T> parser) throws IOException {
+        try (InputStream in = conn.getInputStream();
+             JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            T result = parser.parse(reader);
+            drain(in);
+            return result;
+        }
+    }
+
+    private static HttpURLConnection openConnection(String endpoint, String method) throws IOException {
+        URL url = new URL(AppConfig.getBaseUrl() + "/api" + endpoint);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(30000);
+        conn.setReadTimeout(30000);
+        return conn;
+    }
+
+    private static String readResponse(HttpURLConnection conn) throws Exception {
+        int responseCode = conn.getResponseCode();
+        if (responseCode < 200 || responseCode >= 300) {
+            throw readError(conn, responseCode);
+        }
+        try (InputStream in = conn.getInputStream()) {
+            return readBody(in);
+        }
+    }
+
+    private static Exception readError(HttpURLConnection conn, int responseCode) throws IOException {
+        String errorResponse = "";
+        InputStream errorStream = conn.getErrorStream();
+        if (errorStream != null) {
+            try (InputStream in = errorStream) {
+                errorResponse = readBody(in).trim();
             }
-            throw new Exception("Server Error " + responseCode + ": " + errorResponse.toString());
         }
+        return new Exception("Server Error " + responseCode + ": " + errorResponse);
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            body.append(buffer, 0, read);
+        }
+        return body.toString();
+    }
+
+    // Reads a body to EOF and closes it, which returns the connection to the keep-alive pool
+    private static void drain(InputStream in) {
+        if (in == null) return;
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) != -1) { }
+        } catch (IOException ignored) { }
     }
 }
@@ -0,0 +1,205 @@
+package com.ambe.supervisor.api;
+
+import com.ambe.supervisor.database.EmployeeEntity;
+import com.ambe.supervisor.database.SiteEntity;
+import com.ambe.supervisor.models.AttendanceRecord;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming parsers for the large list endpoints. Rows are built while reading,
+// so the response document is never held in memory as a String or JSONArray.
+public class ResponseParsers {
+    // Same default as the server's Site model; 0 would fail every geofence check
+    private static final int DEFAULT_GEOFENCE_RADIUS = 200;
+
+    public static class AttendanceResult {
+        public final List<AttendanceRecord> records = new ArrayList<>();
+        public String latestUpdatedAt; // Newest server updatedAt seen, used as the next cursor
+    }
+
+    public static ApiService.ResponseParser<List<SiteEntity>> sites() {
+        return reader -> {
+            List<SiteEntity> sites = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                SiteEntity site = readSite(reader);
+                if (site != null) sites.add(site);
+            }
+            reader.endArray();
+            return sites;
+        };
+    }
+
+    // Keeps only employees of siteId (all employees when siteId is null)
+    public static ApiService.ResponseParser<List<EmployeeEntity>> employees(String siteId) {
+        return reader -> {
+            List<EmployeeEntity> employees = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                EmployeeEntity employee = readEmployee(reader);
+                if (employee != null && (siteId == null || siteId.equals(employee.siteId))) {
+                    employees.add(employee);
+                }
+            }
+            reader.endArray();
+            return employees;
+        };
+    }
+
+    // Keeps only records for the given date, but tracks updatedAt across all rows
+    public static ApiService.ResponseParser<AttendanceResult> attendance(String date) {
+        return reader -> {
+            AttendanceResult result = new AttendanceResult();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String id = "", employeeId = null, recordDate = null, status = null;
+                String checkInTime = "", photoUrl = null, updatedAt = null;
+                boolean isLocked = true; // Default to true for synced records
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "id": id = nextString(reader, ""); break;
+                        case "employeeId": employeeId = nextString(reader, null); break;
+                        case "date": recordDate = nextString(reader, null); break;
+                        case "status": status = nextString(reader, null); break;
+                        case "checkInTime": checkInTime = nextString(reader, ""); break;
+                        case "photoUrl": photoUrl = nextString(reader, null); break;
+                        case "updatedAt": updatedAt = nextString(reader, null); break;
+                        case "isLocked": isLocked = nextBoolean(reader, true); break;
+                        default: reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (updatedAt != null && (result.latestUpdatedAt == null || updatedAt.compareTo(result.latestUpdatedAt) > 0)) {
+                    result.latestUpdatedAt = updatedAt;
+                }
+                if (employeeId == null || !date.equals(recordDate)) continue;
+
+                result.records.add(new AttendanceRecord(id, employeeId, recordDate, status, checkInTime, photoUrl, true, isLocked));
+            }
+            reader.endArray();
+            return result;
+        };
+    }
+
+    private static SiteEntity readSite(JsonReader reader) throws IOException {
+        String id = null, name = null, location = null;
+        double latitude = 0, longitude = 0;
+        int geofenceRadius = DEFAULT_GEOFENCE_RADIUS;
+        String boundary = null;
+        String photoFormat = null;
+        int photoMaxBytes = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = nextString(reader, null); break;
+                case "name": name = nextString(reader, null); break;
+                case "location": location = nextString(reader, null); break;
+                case "latitude": latitude = nextDouble(reader, 0); break;
+                case "longitude": longitude = nextDouble(reader, 0); break;
+                case "geofenceRadius": geofenceRadius = (int) nextDouble(reader, DEFAULT_GEOFENCE_RADIUS); break;
+                case "boundary": boundary = readBoundary(reader); break;
+                case "photoFormat": photoFormat = nextString(reader, null); break;
+                case "photoMaxBytes": photoMaxBytes = (int) nextDouble(reader, 0); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null) return null;
+        SiteEntity site = new SiteEntity(id, name, location, latitude, longitude, geofenceRadius);
+        site.boundary = boundary;
+        site.photoFormat = photoFormat;
+        site.photoMaxBytes = photoMaxBytes;
+        return site;
+    }
+
+    // [[lat, lng], ...] re-serialized compactly; null for anything else
+    private static String readBoundary(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("[");
+        boolean valid = true;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                valid = false;
+                continue;
+            }
+            reader.beginArray();
+            double lat = reader.hasNext() ? nextDouble(reader, Double.NaN) : Double.NaN;
+            double lng = reader.hasNext() ? nextDouble(reader, Double.NaN) : Double.NaN;
+            while (reader.hasNext()) reader.skipValue();
+            reader.endArray();
+            if (Double.isNaN(lat) || Double.isNaN(lng)) {
+                valid = false;
+                continue;
+            }
+            if (sb.length() > 1) sb.append(',');
+            sb.append('[').append(lat).append(',').append(lng).append(']');
+        }
+        reader.endArray();
+        return valid && sb.length() > 1 ? sb.append(']').toString() : null;
+    }
+
+    private static EmployeeEntity readEmployee(JsonReader reader) throws IOException {
+        String id = null, biometricCode = null, name = null, role = null;
+        String siteId = null, photoUrl = "", status = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = nextString(reader, null); break;
+                case "biometricCode": biometricCode = nextString(reader, null); break;
+                case "name": name = nextString(reader, null); break;
+                case "role": role = nextString(reader, null); break;
+                case "siteId": siteId = nextString(reader, null); break;
+                case "photoUrl": photoUrl = nextString(reader, ""); break;
+                case "status": status = nextString(reader, null); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Search and display need name and biometricCode; rows without them are skipped as before
+        if (id == null || name == null || biometricCode == null) return null;
+        return new EmployeeEntity(id, biometricCode, name, role, siteId, photoUrl, status);
+    }
+
+    private static String nextString(JsonReader reader, String fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) return reader.nextString();
+        reader.skipValue();
+        return fallback;
+    }
+
+    private static double nextDouble(JsonReader reader, double fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER) return reader.nextDouble();
+        if (token == JsonToken.STRING) {
+            try {
+                return Double.parseDouble(reader.nextString());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+        reader.skipValue();
+        return fallback;
+    }
+
+    private static boolean nextBoolean(JsonReader reader, boolean fallback) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) return reader.nextBoolean();
+        reader.skipValue();
+        return fallback;
+    }
+}
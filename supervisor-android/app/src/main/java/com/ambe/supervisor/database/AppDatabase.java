@@ -5,21 +5,94 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {AttendanceEntity.class, LocationLogEntity.class, SiteEntity.class, EmployeeEntity.class}, version = 3)
+@Database(entities = {AttendanceEntity.class, LocationLogEntity.class, SiteEntity.class, EmployeeEntity.class, SyncStateEntity.class}, version = 11)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract AttendanceDao attendanceDao();
     public abstract SiteDao siteDao();
     public abstract EmployeeDao employeeDao();
+    public abstract SyncStateDao syncStateDao();
+
+    public static final String DATABASE_NAME = "ambe_supervisor_db";
 
     private static volatile AppDatabase INSTANCE;
 
+    // Migrations keep queued (unsynced) attendance across upgrades
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE attendance ADD COLUMN photoHash TEXT");
+            database.execSQL("ALTER TABLE attendance ADD COLUMN photoUploaded INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (`key` TEXT NOT NULL, `etag` TEXT, `lastModified` TEXT, `updatedAt` INTEGER NOT NULL, PRIMARY KEY(`key`))");
+        }
+    };
+
+    // Indices for the hot DAO queries (names follow Room's index_<table>_<columns> convention)
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_attendance_isSynced_photoUploaded` ON `attendance` (`isSynced`, `photoUploaded`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_attendance_date_employeeId` ON `attendance` (`date`, `employeeId`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_attendance_photoHash` ON `attendance` (`photoHash`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_employees_siteId` ON `employees` (`siteId`)");
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE sites ADD COLUMN boundary TEXT");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE location_logs ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE location_logs ADD COLUMN deadLetter INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE sites ADD COLUMN photoFormat TEXT");
+            database.execSQL("ALTER TABLE sites ADD COLUMN photoMaxBytes INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE attendance ADD COLUMN photoBytes INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE attendance ADD COLUMN photoRatio REAL NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_location_logs_deadLetter_attempts_id` ON `location_logs` (`deadLetter`, `attempts`, `id`)");
+        }
+    };
+
+    // The upload queue pages along the primary key; the suspect-row retry that needed this index is gone
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("DROP INDEX IF EXISTS `index_location_logs_deadLetter_attempts_id`");
+        }
+    };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                            AppDatabase.class, "ambe_supervisor_db")
+                            AppDatabase.class, DATABASE_NAME)
+                            .addMigrations(MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11)
                             .fallbackToDestructiveMigration()
                             .build();
                 }
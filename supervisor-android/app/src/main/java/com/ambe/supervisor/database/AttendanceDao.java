@@ -1,8 +1,10 @@
 package com.ambe.supervisor.database;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import java.util.List;
@@ -15,9 +17,48 @@ public interface AttendanceDao {
     @Query("SELECT * FROM attendance WHERE isSynced = 0")
     List<AttendanceEntity> getUnsyncedAttendance();
 
+    // Pending badge: COUNT on the isSynced index, re-emitted by Room whenever attendance changes
+    @Query("SELECT COUNT(*) FROM attendance WHERE isSynced = 0")
+    LiveData<Integer> observePendingCount();
+
     @Query("UPDATE attendance SET isSynced = 1 WHERE id = :id")
     void markAsSynced(int id);
+
+    @Query("UPDATE attendance SET isSynced = 1 WHERE id IN (:ids)")
+    void markAllAsSynced(List<Integer> ids);
     
+    @Query("UPDATE attendance SET photoHash = :hash WHERE id = :id")
+    void setPhotoHash(int id, String hash);
+
+    @Query("SELECT * FROM attendance WHERE isSynced = 1 AND photoUploaded = 0 AND photoHash IS NOT NULL")
+    List<AttendanceEntity> getPendingPhotoUploads();
+
+    @Query("UPDATE attendance SET photoUploaded = 1 WHERE photoHash = :hash")
+    void markPhotoUploaded(String hash);
+
+    // Retention: synced rows whose photo is uploaded (or that have none), older than cutoffDate (YYYY-MM-DD)
+    @Query("SELECT photoPath FROM attendance WHERE date < :cutoffDate AND isSynced = 1 AND (photoUploaded = 1 OR photoHash IS NULL)")
+    List<String> getPrunablePhotoPaths(String cutoffDate);
+
+    @Query("DELETE FROM attendance WHERE date < :cutoffDate AND isSynced = 1 AND (photoUploaded = 1 OR photoHash IS NULL)")
+    int deletePrunable(String cutoffDate);
+
+    // Selects and deletes in one transaction, so a row updated in between can't lose its photo.
+    // Returns the deleted rows' photo paths, one entry (possibly null) per row.
+    @Transaction
+    default List<String> pruneAttendance(String cutoffDate) {
+        List<String> photoPaths = getPrunablePhotoPaths(cutoffDate);
+        deletePrunable(cutoffDate);
+        return photoPaths;
+    }
+
+    // Reference counts for the content-addressed PhotoStore (photoHash names the stored file)
+    @Query("SELECT COUNT(*) FROM attendance WHERE photoHash = :hash")
+    int countPhotoReferences(String hash);
+
+    @Query("SELECT DISTINCT photoHash FROM attendance WHERE photoHash IS NOT NULL")
+    List<String> getReferencedPhotoHashes();
+
     @Query("SELECT * FROM attendance WHERE date = :date")
     List<AttendanceEntity> getAttendanceByDate(String date);
 
@@ -27,9 +68,14 @@ public interface AttendanceDao {
     @Insert
     void insertLocationLog(LocationLogEntity log);
 
-    @Query("SELECT * FROM location_logs")
-    List<LocationLogEntity> getAllLocationLogs();
+    // One chunk is deleted in a single statement (one implicit transaction)
+    @Query("DELETE FROM location_logs WHERE id IN (:ids)")
+    void deleteLocationLogs(List<Integer> ids);
+
+    // Keyset paging over the upload queue, along the primary key
+    @Query("SELECT * FROM location_logs WHERE deadLetter = 0 AND id > :afterId ORDER BY id LIMIT :limit")
+    List<LocationLogEntity> getLocationLogChunk(int afterId, int limit);
 
-    @Query("DELETE FROM location_logs WHERE id = :id")
-    void deleteLocationLog(int id);
+    @Query("UPDATE location_logs SET deadLetter = 1 WHERE id = :id")
+    void markLocationLogDeadLetter(int id);
 }
@@ -1,9 +1,16 @@
 package com.ambe.supervisor.database;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "attendance")
+// (isSynced, photoUploaded) serves the sync queues, (date, employeeId) the per-day lookups
+@Entity(tableName = "attendance",
+        indices = {
+            @Index(value = {"isSynced", "photoUploaded"}),
+            @Index(value = {"date", "employeeId"}),
+            @Index(value = {"photoHash"})
+        })
 public class AttendanceEntity {
     @PrimaryKey(autoGenerate = true)
     public int id;
@@ -16,7 +23,11 @@ public class AttendanceEntity {
     public String type; // IN, OUT
     public double latitude;
     public double longitude;
-    public String photoPath; // Local path or Base64
+    public String photoPath; // Local path (PhotoStore file) or Base64
+    public String photoHash; // SHA-256 of the photo file, uploaded separately
+    public boolean photoUploaded;
+    public int photoBytes; // Encoded size of the photo file
+    public float photoRatio; // photoBytes / original camera file size, to tune upload cost
     public String deviceId;
     public boolean isSynced;
     public String supervisorName;
@@ -4,6 +4,7 @@ import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 
 import java.util.List;
 
@@ -23,4 +24,14 @@ public interface EmployeeDao {
     
     @Query("DELETE FROM employees")
     void deleteAll();
+
+    @Query("DELETE FROM employees WHERE siteId = :siteId")
+    void deleteBySite(String siteId);
+
+    // Swaps a site's roster in one transaction so readers never see it half-written
+    @Transaction
+    default void replaceSite(String siteId, List<EmployeeEntity> employees) {
+        deleteBySite(siteId);
+        insertAll(employees);
+    }
 }
@@ -2,9 +2,10 @@ package com.ambe.supervisor.database;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "employees")
+@Entity(tableName = "employees", indices = {@Index(value = {"siteId"})})
 public class EmployeeEntity {
     @PrimaryKey
     @NonNull
@@ -15,6 +15,8 @@ public class LocationLogEntity {
     public double longitude;
     public String status;
     public String timestamp;
+    public int attempts; // No longer counted (refused rows are dead-lettered); kept to avoid a table rebuild
+    public boolean deadLetter; // Rejected by the server; kept for inspection, never retried
 
     public LocationLogEntity(String supervisorId, String supervisorName, String siteId, double latitude, double longitude, String status, String timestamp) {
         this.supervisorId = supervisorId;
@@ -14,6 +14,9 @@ public class SiteEntity {
     public double latitude;
     public double longitude;
     public int geofenceRadius;
+    public String boundary; // Optional polygon, JSON array of [lat, lng] pairs (see SitePolygon)
+    public String photoFormat; // "jpeg" (default) or "webp", see PhotoEncoder
+    public int photoMaxBytes; // Target size per photo, 0 = fixed quality
 
     public SiteEntity(@NonNull String id, String name, String location, double latitude, double longitude, int geofenceRadius) {
         this.id = id;
@@ -0,0 +1,15 @@
+package com.ambe.supervisor.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface SyncStateDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(SyncStateEntity state);
+
+    @Query("SELECT * FROM sync_state WHERE `key` = :key")
+    SyncStateEntity get(String key);
+}
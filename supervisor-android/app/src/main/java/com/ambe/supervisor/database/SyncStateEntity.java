@@ -0,0 +1,23 @@
+package com.ambe.supervisor.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// HTTP validators of the last successful fetch, keyed per resource (e.g. "roster_<siteId>")
+@Entity(tableName = "sync_state")
+public class SyncStateEntity {
+    @PrimaryKey
+    @NonNull
+    public String key;
+    public String etag;
+    public String lastModified;
+    public long updatedAt;
+
+    public SyncStateEntity(@NonNull String key, String etag, String lastModified, long updatedAt) {
+        this.key = key;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.updatedAt = updatedAt;
+    }
+}
@@ -9,6 +9,7 @@ public class AttendanceRecord {
     private String photoUrl;
     private boolean isSynced;
     private boolean isLocked;
+    private boolean processing; // Photo still being processed; not saved yet
 
     public AttendanceRecord(String id, String employeeId, String date, String status, String checkInTime, String photoUrl, boolean isSynced, boolean isLocked) {
         this.id = id;
@@ -29,8 +30,10 @@ public class AttendanceRecord {
     public String getPhotoUrl() { return photoUrl; }
     public boolean isSynced() { return isSynced; }
     public boolean isLocked() { return isLocked; }
+    public boolean isProcessing() { return processing; }
 
     public void setSynced(boolean synced) { isSynced = synced; }
     public void setLocked(boolean locked) { isLocked = locked; }
     public void setStatus(String status) { this.status = status; }
+    public void setProcessing(boolean processing) { this.processing = processing; }
 }
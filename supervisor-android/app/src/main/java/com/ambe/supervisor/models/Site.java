@@ -1,5 +1,7 @@
 package com.ambe.supervisor.models;
 
+import com.ambe.supervisor.utils.SitePolygon;
+
 public class Site {
     private String id;
     private String name;
@@ -7,6 +9,12 @@ public class Site {
     private double latitude;
     private double longitude;
     private int geofenceRadius;
+    private SitePolygon boundary; // null means the circular geofence applies
+
+    public Site(String id, String name, String location, double latitude, double longitude, int geofenceRadius, String boundary) {
+        this(id, name, location, latitude, longitude, geofenceRadius);
+        this.boundary = SitePolygon.parse(boundary);
+    }
 
     public Site(String id, String name, String location, double latitude, double longitude, int geofenceRadius) {
         this.id = id;
@@ -23,4 +31,5 @@ public class Site {
     public double getLatitude() { return latitude; }
     public double getLongitude() { return longitude; }
     public int getGeofenceRadius() { return geofenceRadius; }
+    public SitePolygon getBoundary() { return boundary; }
 }
@@ -0,0 +1,83 @@
+package com.ambe.supervisor.services;
+
+// Debounced In/Out state for one geofence.
+// Entering needs distance <= radius, leaving needs distance > radius + band (hysteresis),
+// the new side must hold for MIN_DWELL_MS, and a fix is ignored when its accuracy circle reaches
+// across the boundary (accuracy > |distance - radius|): far from the edge even a coarse fix decides.
+public class GeofenceStateMachine {
+    static final float MIN_BAND_METERS = 25f;
+    static final float BAND_FRACTION = 0.2f; // of the radius
+    static final long MIN_DWELL_MS = 20_000;
+
+    public enum State { UNKNOWN, INSIDE, OUTSIDE }
+
+    private State state = State.UNKNOWN;
+    private State candidate = null;
+    private long candidateSince = 0;
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isInside() {
+        return state == State.INSIDE;
+    }
+
+    // Restore a previously committed state (e.g. after a service restart)
+    public void restore(State restored) {
+        state = restored;
+        candidate = null;
+    }
+
+    public static float band(float radius) {
+        return Math.max(MIN_BAND_METERS, radius * BAND_FRACTION);
+    }
+
+    /**
+     * Feeds one fix. Returns true when the committed state changed.
+     *
+     * @param accuracy fix accuracy in meters, 0 if unknown
+     */
+    public boolean update(float distance, float radius, float accuracy, long timeMillis) {
+        float band = band(radius);
+        if (accuracy > Math.abs(distance - radius)) {
+            // Could be on either side of the boundary
+            return false;
+        }
+
+        State observed;
+        if (distance <= radius) {
+            observed = State.INSIDE;
+        } else if (distance > radius + band) {
+            observed = State.OUTSIDE;
+        } else {
+            // Inside the hysteresis band: keep whatever we had
+            observed = state == State.UNKNOWN ? State.OUTSIDE : state;
+        }
+
+        if (observed == state) {
+            candidate = null;
+            return false;
+        }
+
+        // First reliable fix decides immediately
+        if (state == State.UNKNOWN) {
+            state = observed;
+            candidate = null;
+            return true;
+        }
+
+        if (candidate != observed) {
+            candidate = observed;
+            candidateSince = timeMillis;
+            return false;
+        }
+
+        if (timeMillis - candidateSince >= MIN_DWELL_MS) {
+            state = observed;
+            candidate = null;
+            return true;
+        }
+        return false;
+    }
+}
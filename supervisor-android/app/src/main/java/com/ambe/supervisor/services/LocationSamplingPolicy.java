@@ -0,0 +1,80 @@
+package com.ambe.supervisor.services;
+
+// Picks how often (and how accurately) to sample location from the distance to the geofence edge.
+// Near the boundary we sample fast; deep inside or far outside we slow down to the next possible crossing.
+public class LocationSamplingPolicy {
+    // Within this margin of the boundary always sample at full rate
+    static final float NEAR_BOUNDARY_METERS = 50f;
+    // Beyond this margin balanced (~100m) accuracy cannot flip the result
+    static final float BALANCED_MARGIN_METERS = 150f;
+    // Assume at least brisk walking pace when the fix has no speed
+    static final float MIN_ASSUMED_SPEED = 1.5f; // m/s
+
+    // Interval buckets; quantized so small movements don't re-request updates
+    private static final long[] INTERVAL_BUCKETS = {5_000, 10_000, 20_000, 30_000, 60_000, 120_000};
+
+    public static final Tier BOUNDARY = new Tier(true, 2_000, 1_000);
+    public static final Tier SITE_UNKNOWN = new Tier(false, 60_000, 30_000);
+
+    public static final class Tier {
+        public final boolean highAccuracy;
+        public final long intervalMillis;
+        public final long minIntervalMillis;
+
+        Tier(boolean highAccuracy, long intervalMillis, long minIntervalMillis) {
+            this.highAccuracy = highAccuracy;
+            this.intervalMillis = intervalMillis;
+            this.minIntervalMillis = minIntervalMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Tier)) return false;
+            Tier other = (Tier) o;
+            return highAccuracy == other.highAccuracy && intervalMillis == other.intervalMillis
+                    && minIntervalMillis == other.minIntervalMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (intervalMillis * 31 + minIntervalMillis) * 2 + (highAccuracy ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return (highAccuracy ? "HIGH" : "BALANCED") + "/" + intervalMillis + "ms";
+        }
+    }
+
+    /**
+     * @param margin     meters to the nearest geofence boundary (either side), over all assigned sites
+     * @param accuracy   fix accuracy in meters (0 if unknown)
+     * @param speed      last known speed in m/s (0 if unknown)
+     * @param stateKnown false while the geofence state is still UNKNOWN
+     */
+    public Tier select(float margin, float accuracy, float speed, boolean stateKnown) {
+        // An inaccurate fix could already be on the other side
+        if (margin <= Math.max(NEAR_BOUNDARY_METERS, accuracy)) {
+            return BOUNDARY;
+        }
+
+        // Earliest time the boundary could be reached; sample twice within it
+        float assumedSpeed = Math.max(speed, MIN_ASSUMED_SPEED);
+        long secondsToCrossing = (long) (margin / assumedSpeed);
+        long interval = quantize(secondsToCrossing * 1000 / 2);
+
+        // Until a fix has decided the state, keep asking for ones accurate enough to decide it
+        boolean highAccuracy = !stateKnown || margin < BALANCED_MARGIN_METERS;
+        return new Tier(highAccuracy, interval, interval / 2);
+    }
+
+    // Largest bucket not exceeding the wanted interval
+    private static long quantize(long wantedMillis) {
+        long chosen = INTERVAL_BUCKETS[0];
+        for (long bucket : INTERVAL_BUCKETS) {
+            if (bucket <= wantedMillis) chosen = bucket;
+        }
+        return chosen;
+    }
+}
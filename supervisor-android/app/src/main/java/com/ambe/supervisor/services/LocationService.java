@@ -10,10 +10,13 @@ import android.content.SharedPreferences;
 import android.content.pm.ServiceInfo;
 import android.content.pm.PackageManager;
 import android.location.Location;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.IntentFilter;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
-import android.provider.Settings;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -23,11 +26,13 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.ambe.supervisor.R;
 import com.ambe.supervisor.activities.SupervisorActivity;
-import com.ambe.supervisor.api.ApiService;
 import com.ambe.supervisor.database.AppDatabase;
 import com.ambe.supervisor.database.LocationLogEntity;
 import com.ambe.supervisor.database.SiteEntity;
-import com.ambe.supervisor.utils.NetworkUtils;
+import com.ambe.supervisor.utils.GeoMath;
+import com.ambe.supervisor.utils.SitePolygon;
+import com.ambe.supervisor.utils.TrajectoryEncoder;
+import com.ambe.supervisor.workers.SyncWorker;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
@@ -35,11 +40,13 @@ import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 
-import org.json.JSONObject;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class LocationService extends Service {
     private static final String TAG = "LocationService";
@@ -49,6 +56,12 @@ public class LocationService extends Service {
     public static final String EXTRA_LAT = "lat";
     public static final String EXTRA_LNG = "lng";
     public static final String EXTRA_IN_RANGE = "in_range";
+    public static final String EXTRA_SITE_ID = "site_id"; // Site the supervisor is in, absent when out of range
+    private static final String ACTION_UI_VISIBILITY = "com.ambe.supervisor.UI_VISIBILITY";
+
+    // While no screen shows location, fixes are delivered in batches of up to this delay
+    private static final long BATCH_MAX_DELAY_MS = 5 * 60 * 1000;
+    private static volatile boolean uiVisible = false;
 
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
@@ -56,12 +69,41 @@ public class LocationService extends Service {
     private String assignedSiteId;
     private String supervisorName;
     private String userId;
-    private SiteEntity currentSite;
-    private boolean lastInRange = false;
-    private boolean isFirstCheck = true;
+    private final Set<String> assignedSiteIds = new HashSet<>();
+    // Location callbacks, geofence evaluation and request changes all run on this thread
+    private HandlerThread locationThread;
+    private Handler locationHandler;
+    private volatile boolean batched = true;
+    private SiteResolver siteResolver;
+    // Owned by locationThread: assigned sites, per-site debounced state for nearby sites, and the result
+    private final SiteGridIndex siteIndex = new SiteGridIndex();
+    private final Map<String, GeofenceStateMachine> geofences = new HashMap<>();
+    private String insideSiteId;
+    private boolean stateKnown = false;
     private long lastLogTime = 0;
     private static final long LOG_INTERVAL = 15 * 60 * 1000; // 15 Minutes
 
+    private final LocationSamplingPolicy samplingPolicy = new LocationSamplingPolicy();
+    private LocationSamplingPolicy.Tier currentTier;
+
+    // SupervisorActivity calls this from onResume/onPause
+    public static void setUiVisible(Context context, boolean visible) {
+        uiVisible = visible;
+        LocalBroadcastManager.getInstance(context).sendBroadcast(new Intent(ACTION_UI_VISIBILITY));
+    }
+
+    private final BroadcastReceiver visibilityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            locationHandler.post(() -> {
+                if (batched == uiVisible) {
+                    batched = !uiVisible;
+                    requestLocationUpdates(currentTier != null ? currentTier : LocationSamplingPolicy.BOUNDARY);
+                }
+            });
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -69,6 +111,14 @@ public class LocationService extends Service {
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         
         createNotificationChannel();
+
+        locationThread = new HandlerThread("LocationService");
+        locationThread.start();
+        locationHandler = new Handler(locationThread.getLooper());
+        batched = !uiVisible;
+        siteResolver = new SiteResolver(db, locationHandler, siteIndex::update);
+        LocalBroadcastManager.getInstance(this).registerReceiver(visibilityReceiver,
+                new IntentFilter(ACTION_UI_VISIBILITY));
         
         locationCallback = new LocationCallback() {
             @Override
@@ -76,8 +126,10 @@ public class LocationService extends Service {
                 if (locationResult == null) {
                     return;
                 }
-                for (Location location : locationResult.getLocations()) {
-                    processLocation(location);
+                // A batch is evaluated in one pass; only its last fix is broadcast
+                List<Location> locations = locationResult.getLocations();
+                for (int i = 0; i < locations.size(); i++) {
+                    processLocation(locations.get(i), i == locations.size() - 1);
                 }
             }
         };
@@ -106,7 +158,8 @@ public class LocationService extends Service {
             startForeground(1, notification);
         }
 
-        requestLocationUpdates();
+        // Start fast until the first fix tells us where we are relative to the site
+        locationHandler.post(() -> requestLocationUpdates(LocationSamplingPolicy.BOUNDARY));
 
         return START_STICKY;
     }
@@ -117,142 +170,232 @@ public class LocationService extends Service {
         supervisorName = prefs.getString("name", "Unknown");
         userId = prefs.getString("userId", "Unknown");
         
-        // Load persisted state
-        lastInRange = prefs.getBoolean("lastInRange", false);
-        isFirstCheck = prefs.getBoolean("isFirstCheck", true);
-        
-        if (assignedSiteId != null) {
-            // Load asynchronously to avoid Main Thread Exception
-            new Thread(() -> {
-                currentSite = db.siteDao().getSiteById(assignedSiteId);
-                if (currentSite != null) {
-                    Log.d(TAG, "Site loaded: " + currentSite.name + " (" + currentSite.latitude + ", " + currentSite.longitude + ")");
-                } else {
-                    Log.e(TAG, "Site not found in local DB for ID: " + assignedSiteId);
-                }
-            }).start();
+        Set<String> siteIds = new HashSet<>();
+        for (String siteId : prefs.getString("assignedSiteIds", "").split(",")) {
+            if (!siteId.isEmpty()) siteIds.add(siteId);
         }
+        if (assignedSiteId != null && !assignedSiteId.isEmpty()) siteIds.add(assignedSiteId);
+
+        // Load persisted state (geofence state is owned by the location thread)
+        boolean firstCheck = prefs.getBoolean("isFirstCheck", true);
+        boolean wasInRange = prefs.getBoolean("lastInRange", false);
+        String lastSiteId = prefs.getString("lastSiteId", assignedSiteId);
+        locationHandler.post(() -> {
+            assignedSiteIds.clear();
+            assignedSiteIds.addAll(siteIds);
+            geofences.clear();
+            stateKnown = !firstCheck;
+            insideSiteId = null;
+            if (stateKnown && wasInRange && lastSiteId != null) {
+                GeofenceStateMachine restored = new GeofenceStateMachine();
+                restored.restore(GeofenceStateMachine.State.INSIDE);
+                geofences.put(lastSiteId, restored);
+                insideSiteId = lastSiteId;
+            }
+        });
+        
+        // Loaded once in the background; re-read when the sites table changes
+        siteResolver.resolve(siteIds);
     }
 
-    private void requestLocationUpdates() {
+    private void requestLocationUpdates(LocationSamplingPolicy.Tier tier) {
         if (ActivityCompat.checkSelfPermission(this, android.Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             return;
         }
 
-        // Real-time updates for immediate geofence detection
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 2000) // 2 seconds
-                .setMinUpdateIntervalMillis(1000) // 1 second
+        int priority = tier.highAccuracy ? Priority.PRIORITY_HIGH_ACCURACY : Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        LocationRequest locationRequest = new LocationRequest.Builder(priority, tier.intervalMillis)
+                .setMinUpdateIntervalMillis(tier.minIntervalMillis)
+                .setMaxUpdateDelayMillis(batched ? Math.max(BATCH_MAX_DELAY_MS, tier.intervalMillis) : 0)
                 .build();
 
-        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+        // Re-requesting with the same callback replaces the previous request
+        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, locationThread.getLooper());
+        currentTier = tier;
+        Log.d(TAG, "Sampling tier: " + tier + (batched ? " (batched)" : ""));
     }
 
-    private void processLocation(Location location) {
-        if (currentSite == null) {
-            // Try to reload site if null
-            loadUserPrefs();
+    // Only touch the fused provider when the tier actually changes
+    private void adjustSampling(LocationSamplingPolicy.Tier tier) {
+        if (!tier.equals(currentTier)) {
+            requestLocationUpdates(tier);
         }
+    }
 
+    // Runs on locationThread; only the final state is posted to the UI (via LocalBroadcastManager)
+    private void processLocation(Location location, boolean isLatest) {
         String status = "Unknown";
-        boolean inRange = false;
-
-        if (currentSite != null) {
-            float[] results = new float[1];
-            Location.distanceBetween(location.getLatitude(), location.getLongitude(), currentSite.latitude, currentSite.longitude, results);
-            float distanceInMeters = results[0];
-            inRange = distanceInMeters <= currentSite.geofenceRadius;
-            status = inRange ? "In Range" : "Out of Range";
+        boolean firstDecision = false;
+        boolean insideChanged = false;
+        // Each site commits its own enter/leave; a site still UNKNOWN just has no event yet
+        List<String> entered = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        LocationSamplingPolicy.Tier tier;
+
+        if (siteIndex.size() > 0) {
+            float accuracy = location.hasAccuracy() ? location.getAccuracy() : 0f;
+            long time = location.getTime();
+            // With no candidates every boundary is at least the index padding away
+            float nearestMargin = SiteGridIndex.NEAR_PADDING_METERS;
+            boolean allKnown = true;
+            String nearestInside = null;
+            float nearestInsideDistance = Float.MAX_VALUE;
+
+            // Only sites whose grid cell contains this fix, plus any we are still inside
+            List<SiteEntity> candidates = siteIndex.query(location.getLatitude(), location.getLongitude());
+            for (SiteEntity site : candidates) {
+                GeofenceStateMachine geofence = geofences.get(site.id);
+                if (geofence == null) {
+                    geofence = new GeofenceStateMachine();
+                    geofences.put(site.id, geofence);
+                }
+                float distance = distanceTo(location, site, siteIndex.polygon(site.id));
+                // Debounced: jitter around the radius doesn't flip the state
+                GeofenceStateMachine.State before = geofence.getState();
+                if (geofence.update(distance, site.geofenceRadius, accuracy, time)) {
+                    recordTransition(site.id, before, geofence.getState(), entered, left);
+                }
+                nearestMargin = Math.min(nearestMargin, Math.abs(distance - site.geofenceRadius));
+                if (geofence.getState() == GeofenceStateMachine.State.UNKNOWN) allKnown = false;
+                if (geofence.isInside() && distance < nearestInsideDistance) {
+                    nearestInside = site.id;
+                    nearestInsideDistance = distance;
+                }
+            }
+            Iterator<Map.Entry<String, GeofenceStateMachine>> it = geofences.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, GeofenceStateMachine> entry = it.next();
+                SiteEntity site = siteIndex.get(entry.getKey());
+                if (site != null && candidates.contains(site)) continue;
+                if (site == null || !entry.getValue().isInside()) {
+                    it.remove();
+                    continue;
+                }
+                float distance = distanceTo(location, site, siteIndex.polygon(site.id));
+                GeofenceStateMachine geofence = entry.getValue();
+                GeofenceStateMachine.State before = geofence.getState();
+                if (geofence.update(distance, site.geofenceRadius, accuracy, time)) {
+                    recordTransition(site.id, before, geofence.getState(), entered, left);
+                }
+                if (geofence.isInside() && distance < nearestInsideDistance) {
+                    nearestInside = site.id;
+                    nearestInsideDistance = distance;
+                }
+            }
+
+            // The overall status is known once we are inside somewhere or every nearby site has decided
+            if (!stateKnown && (nearestInside != null || allKnown)) {
+                stateKnown = true;
+                firstDecision = true;
+            }
+            insideChanged = !equalIds(nearestInside, insideSiteId);
+            insideSiteId = nearestInside;
+            if (stateKnown) {
+                status = insideSiteId != null ? "In Range" : "Out of Range";
+            }
+            tier = samplingPolicy.select(nearestMargin, accuracy, location.hasSpeed() ? location.getSpeed() : 0f,
+                    stateKnown && allKnown);
         } else {
             status = "Site Not Loaded";
-            Log.w(TAG, "Processing location without site data. Site ID: " + assignedSiteId);
+            Log.w(TAG, "Processing location without site data. Site IDs: " + assignedSiteIds);
+            tier = LocationSamplingPolicy.SITE_UNKNOWN;
         }
+        boolean inRange = insideSiteId != null;
 
         // Broadcast to Activity
-        Intent intent = new Intent(ACTION_LOCATION_UPDATE);
-        intent.putExtra(EXTRA_STATUS, status);
-        intent.putExtra(EXTRA_LAT, location.getLatitude());
-        intent.putExtra(EXTRA_LNG, location.getLongitude());
-        intent.putExtra(EXTRA_IN_RANGE, inRange);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
-
-        // Log Logic
-        long currentTime = System.currentTimeMillis();
-        boolean shouldLog = false;
-
-        if (isFirstCheck || inRange != lastInRange) {
-            // Status Changed
-            shouldLog = true;
-            lastInRange = inRange;
-            isFirstCheck = false;
-            
+        if (isLatest) {
+            Intent intent = new Intent(ACTION_LOCATION_UPDATE);
+            intent.putExtra(EXTRA_STATUS, status);
+            intent.putExtra(EXTRA_LAT, location.getLatitude());
+            intent.putExtra(EXTRA_LNG, location.getLongitude());
+            intent.putExtra(EXTRA_IN_RANGE, inRange);
+            intent.putExtra(EXTRA_SITE_ID, insideSiteId);
+            LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+        }
+
+        if (firstDecision || insideChanged || !entered.isEmpty() || !left.isEmpty()) {
             // Persist state
             SharedPreferences prefs = getSharedPreferences("AmbeSupervisorPrefs", MODE_PRIVATE);
             prefs.edit()
-                .putBoolean("lastInRange", lastInRange)
-                .putBoolean("isFirstCheck", isFirstCheck)
+                .putBoolean("lastInRange", inRange)
+                .putString("lastSiteId", insideSiteId)
+                .putBoolean("isFirstCheck", false)
                 .apply();
         }
-        // Periodic logging removed as per requirement
-        // else if (currentTime - lastLogTime > LOG_INTERVAL) {
-        //    shouldLog = true;
-        // }
-
-        // Force log if site is not loaded, so we can debug
-        // if (currentSite == null && currentTime - lastLogTime > 60000) { // Log every minute if site missing
-        //      shouldLog = true;
-        // }
 
-        if (shouldLog) {
+        // Log Logic: a leave is logged against the site that was left, an enter against the site entered
+        long currentTime = System.currentTimeMillis();
+        for (String siteId : left) {
             lastLogTime = currentTime;
-            logLocation(status, location);
+            logLocation("Out of Range", location, siteId);
+        }
+        for (String siteId : entered) {
+            lastLogTime = currentTime;
+            logLocation("In Range", location, siteId);
+        }
+        if (firstDecision && entered.isEmpty() && left.isEmpty()) {
+            // First check outside every site: record where we started
+            lastLogTime = currentTime;
+            logLocation(status, location, assignedSiteId);
+        }
+
+        if (isLatest) {
+            adjustSampling(tier);
         }
     }
 
-    private void logLocation(String status, Location location) {
-        try {
-            // RELOAD NAME to ensure we have the latest (Fix for "Pokemon" name update issue)
-            SharedPreferences prefs = getSharedPreferences("AmbeSupervisorPrefs", MODE_PRIVATE);
-            supervisorName = prefs.getString("name", supervisorName);
-
-            String deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
-            
-            if (NetworkUtils.isNetworkAvailable(this)) {
-                JSONObject json = new JSONObject();
-                json.put("supervisorId", userId);
-                json.put("supervisorName", supervisorName);
-                json.put("siteId", (assignedSiteId != null && !assignedSiteId.isEmpty()) ? assignedSiteId : "Unassigned");
-                json.put("latitude", location.getLatitude());
-                json.put("longitude", location.getLongitude());
-                json.put("status", status);
-                json.put("deviceId", deviceId);
-                
-                ApiService.logLocation(json.toString(), new ApiService.ApiCallback() {
-                    @Override
-                    public void onSuccess(String response) { }
-                    @Override
-                    public void onError(String error) {
-                        saveLocationLocally(status, location, deviceId);
-                    }
-                });
-            } else {
-                saveLocationLocally(status, location, deviceId);
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+    private static void recordTransition(String siteId, GeofenceStateMachine.State before, GeofenceStateMachine.State after,
+                                         List<String> entered, List<String> left) {
+        if (after == GeofenceStateMachine.State.INSIDE) {
+            entered.add(siteId);
+        } else if (before == GeofenceStateMachine.State.INSIDE) {
+            left.add(siteId);
+        }
     }
 
-    private void saveLocationLocally(String status, Location location, String deviceId) {
+    // Precise only near the enter (radius) and leave (radius + band) thresholds.
+    // For a polygon the boundary plays the radius: radius + signed distance to the edge.
+    private static float distanceTo(Location location, SiteEntity site, SitePolygon polygon) {
+        float radius = site.geofenceRadius;
+        float band = GeofenceStateMachine.band(radius);
+        if (polygon != null) {
+            return radius + (float) polygon.signedDistance(location.getLatitude(), location.getLongitude(),
+                    band + SiteGridIndex.NEAR_PADDING_METERS);
+        }
+        return (float) GeoMath.distance(location.getLatitude(), location.getLongitude(), site.latitude, site.longitude,
+                radius, radius + band);
+    }
+
+    private static boolean equalIds(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // Logs are queued locally and uploaded as compressed tracks by SyncWorker
+    private void logLocation(String status, Location location, String siteId) {
+        // RELOAD NAME to ensure we have the latest (Fix for "Pokemon" name update issue)
+        SharedPreferences prefs = getSharedPreferences("AmbeSupervisorPrefs", MODE_PRIVATE);
+        supervisorName = prefs.getString("name", supervisorName);
+
+        saveLocationLocally(status, location, (siteId != null && !siteId.isEmpty()) ? siteId : "Unassigned");
+    }
+
+    private void saveLocationLocally(String status, Location location, String siteId) {
         new Thread(() -> {
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US).format(new Date());
-            LocationLogEntity log = new LocationLogEntity(
-                userId,
-                supervisorName,
-                assignedSiteId,
-                location.getLatitude(),
-                location.getLongitude(),
-                status,
-                timestamp
-            );
-            db.attendanceDao().insertLocationLog(log);
+            try {
+                // Fix time, not processing time: batched fixes can be minutes old
+                String timestamp = TrajectoryEncoder.formatTimestamp(location.getTime());
+                LocationLogEntity log = new LocationLogEntity(
+                    userId,
+                    supervisorName,
+                    siteId,
+                    location.getLatitude(),
+                    location.getLongitude(),
+                    status,
+                    timestamp
+                );
+                db.attendanceDao().insertLocationLog(log);
+                SyncWorker.enqueueLocationLogSync(getApplicationContext());
+            } catch (Exception e) { e.printStackTrace(); }
         }).start();
     }
 
@@ -274,6 +417,9 @@ public class LocationService extends Service {
     public void onDestroy() {
         super.onDestroy();
         fusedLocationClient.removeLocationUpdates(locationCallback);
+        LocalBroadcastManager.getInstance(this).unregisterReceiver(visibilityReceiver);
+        siteResolver.close();
+        locationThread.quitSafely();
     }
 
     @Nullable
@@ -0,0 +1,164 @@
+package com.ambe.supervisor.services;
+
+import com.ambe.supervisor.database.SiteEntity;
+import com.ambe.supervisor.utils.SitePolygon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Fixed lat/lng grid over the assigned sites so a fix only looks at sites in its own cell.
+// Each site is registered in every cell its geofence or polygon (plus NEAR_PADDING_METERS) touches,
+// so a fix with no candidates is at least that far from every boundary.
+public class SiteGridIndex {
+    static final double CELL_DEGREES = 0.01; // ~1.1 km of latitude
+    static final float NEAR_PADDING_METERS = 500f;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private static final class Entry {
+        final SiteEntity site;
+        final SitePolygon polygon; // Parsed once per geometry change
+        final long[] cells;
+
+        Entry(SiteEntity site, SitePolygon polygon, long[] cells) {
+            this.site = site;
+            this.polygon = polygon;
+            this.cells = cells;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Long, List<SiteEntity>> cells = new HashMap<>();
+
+    public int size() {
+        return entries.size();
+    }
+
+    public SiteEntity get(String siteId) {
+        Entry entry = entries.get(siteId);
+        return entry != null ? entry.site : null;
+    }
+
+    // Polygon boundary of an indexed site, or null for a circular geofence
+    public SitePolygon polygon(String siteId) {
+        Entry entry = entries.get(siteId);
+        return entry != null ? entry.polygon : null;
+    }
+
+    // Sites whose geofence (padded) may contain the point; do not modify the returned list
+    public List<SiteEntity> query(double lat, double lng) {
+        List<SiteEntity> sites = cells.get(cellKey(cellIndex(lat), cellIndex(lng)));
+        return sites != null ? sites : Collections.<SiteEntity>emptyList();
+    }
+
+    /**
+     * Brings the index in line with {@code sites}: only sites that were added, removed or moved
+     * touch the grid; unchanged geometry just swaps the entity reference.
+     */
+    public void update(List<SiteEntity> sites) {
+        Set<String> seen = new HashSet<>();
+        for (SiteEntity site : sites) {
+            seen.add(site.id);
+            Entry existing = entries.get(site.id);
+            if (existing != null && sameGeometry(existing.site, site)) {
+                replaceInCells(existing, site);
+                entries.put(site.id, new Entry(site, existing.polygon, existing.cells));
+                continue;
+            }
+            if (existing != null) {
+                removeFromCells(existing);
+            }
+            SitePolygon polygon = SitePolygon.parse(site.boundary);
+            Entry entry = new Entry(site, polygon, coveredCells(site, polygon));
+            addToCells(entry);
+            entries.put(site.id, entry);
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String id : entries.keySet()) {
+            if (!seen.contains(id)) removed.add(id);
+        }
+        for (String id : removed) {
+            removeFromCells(entries.remove(id));
+        }
+    }
+
+    static float reachMeters(SiteEntity site) {
+        return site.geofenceRadius + GeofenceStateMachine.band(site.geofenceRadius) + NEAR_PADDING_METERS;
+    }
+
+    private static boolean sameGeometry(SiteEntity a, SiteEntity b) {
+        return a.latitude == b.latitude && a.longitude == b.longitude && a.geofenceRadius == b.geofenceRadius
+                && (a.boundary == null ? b.boundary == null : a.boundary.equals(b.boundary));
+    }
+
+    private static long[] coveredCells(SiteEntity site, SitePolygon polygon) {
+        double reach = reachMeters(site);
+        double dLat = reach / METERS_PER_DEGREE;
+        double cosLat = Math.max(0.01, Math.cos(Math.toRadians(site.latitude)));
+        double dLng = reach / (METERS_PER_DEGREE * cosLat);
+
+        // A polygon's extent is its bounding box; the radius only sets the hysteresis band then
+        double south = site.latitude, north = site.latitude, west = site.longitude, east = site.longitude;
+        if (polygon != null) {
+            south = polygon.getMinLat();
+            north = polygon.getMaxLat();
+            west = polygon.getMinLng();
+            east = polygon.getMaxLng();
+            dLat = (GeofenceStateMachine.band(site.geofenceRadius) + NEAR_PADDING_METERS) / METERS_PER_DEGREE;
+            dLng = dLat / cosLat;
+        }
+
+        int minLat = cellIndex(south - dLat), maxLat = cellIndex(north + dLat);
+        int minLng = cellIndex(west - dLng), maxLng = cellIndex(east + dLng);
+        long[] keys = new long[(maxLat - minLat + 1) * (maxLng - minLng + 1)];
+        int i = 0;
+        for (int y = minLat; y <= maxLat; y++) {
+            for (int x = minLng; x <= maxLng; x++) {
+                keys[i++] = cellKey(y, x);
+            }
+        }
+        return keys;
+    }
+
+    private void addToCells(Entry entry) {
+        for (long key : entry.cells) {
+            List<SiteEntity> list = cells.get(key);
+            if (list == null) {
+                list = new ArrayList<>(2);
+                cells.put(key, list);
+            }
+            list.add(entry.site);
+        }
+    }
+
+    private void removeFromCells(Entry entry) {
+        for (long key : entry.cells) {
+            List<SiteEntity> list = cells.get(key);
+            if (list == null) continue;
+            list.remove(entry.site);
+            if (list.isEmpty()) cells.remove(key);
+        }
+    }
+
+    private void replaceInCells(Entry entry, SiteEntity site) {
+        for (long key : entry.cells) {
+            List<SiteEntity> list = cells.get(key);
+            if (list == null) continue;
+            int i = list.indexOf(entry.site);
+            if (i >= 0) list.set(i, site);
+        }
+    }
+
+    private static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int latIndex, int lngIndex) {
+        return ((long) latIndex << 32) | (lngIndex & 0xffffffffL);
+    }
+}
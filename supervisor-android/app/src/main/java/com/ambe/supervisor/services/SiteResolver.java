@@ -0,0 +1,144 @@
+package com.ambe.supervisor.services;
+
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.ambe.supervisor.database.AppDatabase;
+import com.ambe.supervisor.database.SiteEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Loads the assigned sites for LocationService without polling from the location callback.
+// At most one lookup runs at a time; missing sites are retried with backoff and everything is
+// re-read as soon as the sites table changes (e.g. after a site sync).
+public class SiteResolver {
+    private static final String TAG = "SiteResolver";
+    private static final long INITIAL_RETRY_MS = 5_000;
+    private static final long MAX_RETRY_MS = 5 * 60 * 1000;
+
+    public interface Listener {
+        // Called on the handler passed to the constructor
+        void onSitesResolved(List<SiteEntity> sites);
+    }
+
+    private final AppDatabase db;
+    private final Handler handler;
+    private final Listener listener;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final Object lock = new Object();
+    private Set<String> siteIds = Collections.emptySet();
+    private boolean lookupRunning = false;
+    private boolean lookupAgain = false; // Requested while a lookup was running
+    private long retryDelay = INITIAL_RETRY_MS;
+    private boolean observing = false;
+    private boolean closed = false;
+
+    private final Runnable retryRunnable = this::lookup;
+
+    private final InvalidationTracker.Observer sitesObserver = new InvalidationTracker.Observer("sites") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            lookup();
+        }
+    };
+
+    public SiteResolver(AppDatabase db, Handler handler, Listener listener) {
+        this.db = db;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    public void resolve(Set<String> siteIds) {
+        synchronized (lock) {
+            this.siteIds = new HashSet<>(siteIds);
+            retryDelay = INITIAL_RETRY_MS;
+        }
+        handler.removeCallbacks(retryRunnable);
+        lookup();
+    }
+
+    private void lookup() {
+        synchronized (lock) {
+            if (closed || siteIds.isEmpty()) return;
+            if (lookupRunning) {
+                lookupAgain = true;
+                return;
+            }
+            lookupRunning = true;
+        }
+        executor.execute(this::runLookup);
+    }
+
+    private void runLookup() {
+        if (!observing) {
+            // Registering may touch the database, so do it off the caller's thread
+            db.getInvalidationTracker().addObserver(sitesObserver);
+            observing = true;
+        }
+
+        Set<String> ids;
+        synchronized (lock) {
+            ids = siteIds;
+        }
+
+        List<SiteEntity> sites = new ArrayList<>();
+        try {
+            for (SiteEntity site : db.siteDao().getAllSites()) {
+                if (ids.contains(site.id)) sites.add(site);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        long delay = 0;
+        boolean again;
+        boolean complete = sites.size() == ids.size();
+        synchronized (lock) {
+            lookupRunning = false;
+            again = lookupAgain;
+            lookupAgain = false;
+            if (!complete) {
+                delay = retryDelay;
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_MS);
+            } else {
+                retryDelay = INITIAL_RETRY_MS;
+            }
+        }
+
+        Log.d(TAG, "Sites loaded: " + sites.size() + " of " + ids.size());
+        handler.removeCallbacks(retryRunnable);
+        handler.post(() -> listener.onSitesResolved(sites));
+        if (!complete) {
+            Log.e(TAG, "Assigned sites missing from local DB, retrying in " + delay + "ms");
+            handler.postDelayed(retryRunnable, delay);
+        }
+
+        if (again) {
+            lookup();
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        handler.removeCallbacks(retryRunnable);
+        executor.execute(() -> {
+            if (observing) {
+                db.getInvalidationTracker().removeObserver(sitesObserver);
+                observing = false;
+            }
+        });
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ambe.supervisor.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Reusable mutable bitmaps for BitmapFactory.Options.inBitmap, bucketed by allocation size.
+// Any pooled bitmap at least as large as the decode target can be reused (API 19+ rules),
+// so back-to-back captures decode into the same memory instead of allocating a new one each time.
+public class BitmapPool {
+    private final long maxBytes;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private long pooledBytes = 0;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Smallest pooled bitmap that can hold width x height in config, or null
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = buckets.ceilingEntry(needed);
+        if (entry == null) return null;
+
+        ArrayDeque<Bitmap> bucket = entry.getValue();
+        Bitmap bitmap = bucket.poll();
+        if (bucket.isEmpty()) buckets.remove(entry.getKey());
+        pooledBytes -= entry.getKey();
+        return bitmap;
+    }
+
+    // Hands a bitmap back; it is recycled instead if it would push the pool over budget
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        // Evict the largest first; the next capture is most likely the same size as this one
+        while (pooledBytes + size > maxBytes && !buckets.isEmpty()) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> largest = buckets.lastEntry();
+            Bitmap evicted = largest.getValue().poll();
+            if (largest.getValue().isEmpty()) buckets.remove(largest.getKey());
+            pooledBytes -= largest.getKey();
+            if (evicted != null) evicted.recycle();
+        }
+        ArrayDeque<Bitmap> bucket = buckets.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(size, bucket);
+        }
+        bucket.push(bitmap);
+        pooledBytes += size;
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> bucket : buckets.values()) {
+            for (Bitmap bitmap : bucket) bitmap.recycle();
+        }
+        buckets.clear();
+        pooledBytes = 0;
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ambe.supervisor.utils;
+
+// Geofence distance math in plain Java (no android.location), allocation-free.
+// Short distances use a local flat-earth projection on the WGS84 ellipsoid; Vincenty's inverse
+// formula is only used beyond FAST_PATH_MAX_METERS or when a point is within the fast path's
+// error bound of a radius being tested.
+public final class GeoMath {
+    // WGS84
+    private static final double A = 6378137.0;
+    private static final double F = 1 / 298.257223563;
+    private static final double B = A * (1 - F);
+    private static final double E2 = F * (2 - F);
+
+    // Within this range the projection error stays below FAST_PATH_ERROR_FRACTION
+    static final double FAST_PATH_MAX_METERS = 10_000;
+    static final double FAST_PATH_ERROR_FRACTION = 0.001;
+    static final double FAST_PATH_ERROR_METERS = 0.5;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Equirectangular distance using the meridional and prime-vertical radii of curvature at the
+     * mean latitude. Within FAST_PATH_MAX_METERS the result is within {@link #errorBound} of the
+     * ellipsoidal distance.
+     */
+    public static double fastDistance(double lat1, double lon1, double lat2, double lon2) {
+        double meanLat = Math.toRadians((lat1 + lat2) / 2);
+        double sinLat = Math.sin(meanLat);
+        double w = 1 - E2 * sinLat * sinLat;
+        double meridional = A * (1 - E2) / (w * Math.sqrt(w));
+        double primeVertical = A / Math.sqrt(w);
+
+        double dLon = lon2 - lon1;
+        if (dLon > 180) dLon -= 360;
+        else if (dLon < -180) dLon += 360;
+
+        double y = Math.toRadians(lat2 - lat1) * meridional;
+        double x = Math.toRadians(dLon) * primeVertical * Math.cos(meanLat);
+        return Math.sqrt(x * x + y * y);
+    }
+
+    public static double errorBound(double fastDistance) {
+        return fastDistance * FAST_PATH_ERROR_FRACTION + FAST_PATH_ERROR_METERS;
+    }
+
+    // Fast distance, refined precisely only if it could fall on the wrong side of either threshold
+    public static double distance(double lat1, double lon1, double lat2, double lon2,
+                                  double threshold, double outerThreshold) {
+        double d = fastDistance(lat1, lon1, lat2, lon2);
+        if (d > FAST_PATH_MAX_METERS) {
+            return preciseDistance(lat1, lon1, lat2, lon2);
+        }
+        double error = errorBound(d);
+        if (Math.abs(d - threshold) <= error || Math.abs(d - outerThreshold) <= error) {
+            return preciseDistance(lat1, lon1, lat2, lon2);
+        }
+        return d;
+    }
+
+    public static boolean isWithin(double lat, double lon, double centerLat, double centerLon, double radius) {
+        return distance(lat, lon, centerLat, centerLon, radius, radius) <= radius;
+    }
+
+    // Vincenty inverse on WGS84; haversine if it fails to converge (nearly antipodal points)
+    public static double preciseDistance(double lat1, double lon1, double lat2, double lon2) {
+        double l = Math.toRadians(lon2 - lon1);
+        double u1 = Math.atan((1 - F) * Math.tan(Math.toRadians(lat1)));
+        double u2 = Math.atan((1 - F) * Math.tan(Math.toRadians(lat2)));
+        double sinU1 = Math.sin(u1), cosU1 = Math.cos(u1);
+        double sinU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+        double lambda = l;
+        double sinSigma, cosSigma, sigma, cosSqAlpha, cos2SigmaM;
+        int iterations = 0;
+        while (true) {
+            double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+            if (sinSigma == 0) return 0; // Coincident points
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cosSqAlpha = 1 - sinAlpha * sinAlpha;
+            cos2SigmaM = cosSqAlpha != 0 ? cosSigma - 2 * sinU1 * sinU2 / cosSqAlpha : 0; // Equatorial line
+            double c = F / 16 * cosSqAlpha * (4 + F * (4 - 3 * cosSqAlpha));
+            double previous = lambda;
+            lambda = l + (1 - c) * F * sinAlpha
+                    * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+            if (Math.abs(lambda - previous) < 1e-12) break;
+            if (++iterations >= 100) return haversine(lat1, lon1, lat2, lon2);
+        }
+
+        double uSq = cosSqAlpha * (A * A - B * B) / (B * B);
+        double bigA = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+        double bigB = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+        double deltaSigma = bigB * sinSigma * (cos2SigmaM + bigB / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - bigB / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return B * bigA * (sigma - deltaSigma);
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * 6371008.8 * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
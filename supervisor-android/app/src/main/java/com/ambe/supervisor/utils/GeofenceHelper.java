@@ -1,16 +1,23 @@
 package com.ambe.supervisor.utils;
 
-import android.location.Location;
+import com.ambe.supervisor.models.Site;
 
 public class GeofenceHelper {
-    // Distance in meters
+    // Distance in meters (precise, WGS84)
     public static float getDistance(double lat1, double lon1, double lat2, double lon2) {
-        float[] results = new float[1];
-        Location.distanceBetween(lat1, lon1, lat2, lon2, results);
-        return results[0];
+        return (float) GeoMath.preciseDistance(lat1, lon1, lat2, lon2);
     }
 
+    // Fast path; only refined when the point is within the error margin of the radius
     public static boolean isWithinRange(double currentLat, double currentLon, double siteLat, double siteLon, float radiusInMeters) {
-        return getDistance(currentLat, currentLon, siteLat, siteLon) <= radiusInMeters;
+        return GeoMath.isWithin(currentLat, currentLon, siteLat, siteLon, radiusInMeters);
+    }
+
+    // Polygon boundary when the site has one, otherwise the circular radius
+    public static boolean isWithinSite(double currentLat, double currentLon, Site site) {
+        if (site.getBoundary() != null) {
+            return site.getBoundary().contains(currentLat, currentLon);
+        }
+        return isWithinRange(currentLat, currentLon, site.getLatitude(), site.getLongitude(), site.getGeofenceRadius());
     }
 }
@@ -0,0 +1,141 @@
+package com.ambe.supervisor.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+// Encoding stage of the photo pipeline: JPEG or lossy WebP, at a fixed quality or at the highest
+// quality that fits a per-site byte budget (binary search over quality).
+// Not thread-safe: the encode buffer is reused across photos on the worker thread.
+public class PhotoEncoder {
+    public static final String FORMAT_JPEG = "jpeg";
+    public static final String FORMAT_WEBP = "webp";
+
+    static final int DEFAULT_QUALITY = 60; // Quality 60 is sufficient
+    static final int MIN_QUALITY = 30;
+    static final int MAX_QUALITY = 90;
+    // Quality steps are coarse below this; stop searching once the window is this narrow
+    private static final int QUALITY_PRECISION = 3;
+
+    // Per-site choice; a budget of 0 means fixed DEFAULT_QUALITY
+    public static final class Settings {
+        public final String format;
+        public final int maxBytes;
+
+        public Settings(String format, int maxBytes) {
+            this.format = FORMAT_WEBP.equalsIgnoreCase(format) ? FORMAT_WEBP : FORMAT_JPEG;
+            this.maxBytes = Math.max(0, maxBytes);
+        }
+    }
+
+    public static final Settings DEFAULT = new Settings(FORMAT_JPEG, 0);
+
+    public static final class Result {
+        public final String format;
+        public final int quality;
+        public final int bytes;
+
+        Result(String format, int quality, int bytes) {
+            this.format = format;
+            this.quality = quality;
+            this.bytes = bytes;
+        }
+    }
+
+    // Exposes the backing array so the encoded bytes can be written out without a copy
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(256 * 1024);
+        }
+
+        void writeTo(OutputStream out, int length) throws IOException {
+            out.write(buf, 0, length);
+        }
+    }
+
+    private Buffer buffer = new Buffer();
+    private Buffer best = new Buffer();
+
+    /**
+     * Encodes {@code bitmap} per {@code settings} and writes it to {@code out}. With a budget the
+     * highest quality in [MIN_QUALITY, MAX_QUALITY] that fits is used, or MIN_QUALITY if none does.
+     */
+    public Result encode(Bitmap bitmap, Settings settings, OutputStream out) throws IOException {
+        Bitmap.CompressFormat format = compressFormat(settings.format);
+        if (settings.maxBytes == 0) {
+            compress(bitmap, format, DEFAULT_QUALITY, buffer);
+            buffer.writeTo(out, buffer.size());
+            return new Result(settings.format, DEFAULT_QUALITY, buffer.size());
+        }
+
+        int low = MIN_QUALITY, high = MAX_QUALITY;
+        int bestQuality = -1;
+        while (low <= high) {
+            int quality = (low + high) / 2;
+            compress(bitmap, format, quality, buffer);
+            if (buffer.size() <= settings.maxBytes) {
+                bestQuality = quality;
+                // Keep this encoding, search the next one in the other buffer
+                Buffer fitting = buffer;
+                buffer = best;
+                best = fitting;
+                low = quality + 1;
+                if (high - low < QUALITY_PRECISION) break;
+            } else {
+                high = quality - 1;
+            }
+        }
+        if (bestQuality < 0) {
+            // Nothing fits: smallest allowed quality is still better than failing the capture
+            bestQuality = MIN_QUALITY;
+            compress(bitmap, format, bestQuality, best);
+        }
+        best.writeTo(out, best.size());
+        return new Result(settings.format, bestQuality, best.size());
+    }
+
+    // File extension the PhotoStore uses for a format
+    public static String extension(String format) {
+        return FORMAT_WEBP.equals(format) ? ".webp" : ".jpg";
+    }
+
+    // MIME type from the file's magic bytes, so uploads match whatever format was encoded
+    public static String mimeType(File file) {
+        byte[] header = new byte[12];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            if (read == header.length && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                    && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+                return "image/webp";
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return "image/jpeg";
+    }
+
+    private static void compress(Bitmap bitmap, Bitmap.CompressFormat format, int quality, ByteArrayOutputStream into) throws IOException {
+        into.reset();
+        if (!bitmap.compress(format, quality, into)) {
+            throw new IOException(String.format(Locale.US, "Encoding failed (%s, q%d)", format, quality));
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat compressFormat(String format) {
+        if (!FORMAT_WEBP.equals(format)) return Bitmap.CompressFormat.JPEG;
+        // Before API 30, WEBP below quality 100 is lossy
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+}
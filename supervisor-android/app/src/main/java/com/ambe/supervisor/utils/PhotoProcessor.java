@@ -0,0 +1,192 @@
+package com.ambe.supervisor.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.ambe.supervisor.database.AppDatabase;
+import com.ambe.supervisor.database.AttendanceEntity;
+import com.ambe.supervisor.database.SiteEntity;
+import com.ambe.supervisor.models.AttendanceRecord;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Camera result pipeline: decode -> watermark -> encode (see PhotoEncoder) -> store (see PhotoStore)
+// -> DB insert, off the UI thread.
+// A single worker thread keeps at most one decoded bitmap in memory at a time, and decodes into
+// pooled bitmaps so back-to-back captures reuse the same allocation.
+public class PhotoProcessor {
+    // Target: Max 800px dimension (Safer for low-end devices)
+    private static final int TARGET_MAX_DIMENSION = 800;
+    private static final Bitmap.Config DECODE_CONFIG = Bitmap.Config.RGB_565;
+    // One decoded photo may use at most 1/8 of the app's heap class
+    private static final int HEAP_FRACTION = 8;
+
+    public interface Listener {
+        // Both are called on the main thread
+        void onPhotoProcessed(Job job);
+        void onPhotoFailed(Job job, String error);
+    }
+
+    // Everything the pipeline needs, captured on the UI thread when the photo was taken
+    public static class Job {
+        public final String capturePath; // Camera output, deleted once processed
+        public final AttendanceEntity entity; // Inserted with the stored photo's path and hash
+        public final AttendanceRecord record; // Optimistic UI row for this capture
+        final String[] watermarkLines; // Top to bottom; null entries are skipped
+
+        public Job(String capturePath, AttendanceEntity entity, AttendanceRecord record, String... watermarkLines) {
+            this.capturePath = capturePath;
+            this.entity = entity;
+            this.record = record;
+            this.watermarkLines = watermarkLines;
+        }
+    }
+
+    private final AppDatabase db;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "PhotoProcessor"));
+    private final long bitmapBudget;
+    private final BitmapPool pool;
+    private final WatermarkRenderer watermark = new WatermarkRenderer(); // Worker thread only
+    private final PhotoEncoder encoder = new PhotoEncoder(); // Worker thread only
+    private final PhotoStore store;
+
+    public PhotoProcessor(Context context, AppDatabase db, Listener listener) {
+        this.db = db;
+        this.store = new PhotoStore(context);
+        this.listener = listener;
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = am != null ? am.getMemoryClass() : 16;
+        this.bitmapBudget = memoryClassMb * 1024L * 1024L / HEAP_FRACTION;
+        // Room for two photos, so a portrait/landscape switch still finds a big enough bitmap
+        this.pool = new BitmapPool(2 * bitmapBudget);
+    }
+
+    public Future<?> submit(Job job) {
+        return executor.submit(() -> process(job));
+    }
+
+    // Queued captures still finish (and reach the DB); no new ones are accepted
+    public void shutdown() {
+        executor.submit(() -> {
+            pool.clear();
+            watermark.release();
+        });
+        executor.shutdown();
+    }
+
+    private void process(Job job) {
+        Bitmap bitmap = null;
+        try {
+            long originalBytes = new File(job.capturePath).length();
+            bitmap = decode(job.capturePath);
+            if (bitmap == null) {
+                fail(job, "Failed to process image");
+                return;
+            }
+
+            watermark.render(bitmap, job.watermarkLines);
+
+            // Smaller, watermarked version goes to the store; the capture is never overwritten
+            PhotoEncoder.Result encoded;
+            PhotoStore.Pending pending = store.begin();
+            File stored;
+            try {
+                encoded = encoder.encode(bitmap, encodingFor(job.entity.siteId), pending.stream());
+                stored = pending.commit(PhotoEncoder.extension(encoded.format));
+            } catch (Exception e) {
+                pending.abort();
+                throw e;
+            }
+            pool.put(bitmap);
+            bitmap = null;
+
+            // Hashed while writing, so the sync does not need to read the file again
+            job.entity.photoPath = stored.getAbsolutePath();
+            job.entity.photoHash = pending.hash();
+            job.entity.photoBytes = encoded.bytes;
+            job.entity.photoRatio = originalBytes > 0 ? (float) encoded.bytes / originalBytes : 0;
+
+            db.attendanceDao().insert(job.entity);
+            mainHandler.post(() -> listener.onPhotoProcessed(job));
+        } catch (OutOfMemoryError e) {
+            // The budget should prevent this; drop the cached bitmaps rather than retry smaller
+            pool.clear();
+            fail(job, "Failed to process image (Low Memory)");
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(job, "Error processing image: " + e.getMessage());
+        } finally {
+            // Hand back to the pool for the next capture
+            if (bitmap != null) {
+                pool.put(bitmap);
+            }
+            // Processed or not, the capture is not needed any more (a failed one is retaken)
+            new File(job.capturePath).delete();
+        }
+    }
+
+    // Per-site format and size budget; sites without one keep the JPEG q60 default
+    private PhotoEncoder.Settings encodingFor(String siteId) {
+        SiteEntity site = siteId != null ? db.siteDao().getSiteById(siteId) : null;
+        if (site == null || (site.photoFormat == null && site.photoMaxBytes <= 0)) return PhotoEncoder.DEFAULT;
+        return new PhotoEncoder.Settings(site.photoFormat, site.photoMaxBytes);
+    }
+
+    private void fail(Job job, String error) {
+        mainHandler.post(() -> listener.onPhotoFailed(job, error));
+    }
+
+    private Bitmap decode(String path) {
+        // 1. Read the bounds only
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int photoW = options.outWidth;
+        int photoH = options.outHeight;
+        int scaleFactor = 1;
+        int bytesPerPixel = BitmapPool.bytesPerPixel(DECODE_CONFIG);
+
+        // Aggressive Downscaling: Target ~800px, and never more than the heap budget allows
+        while (photoW / 2 >= TARGET_MAX_DIMENSION || photoH / 2 >= TARGET_MAX_DIMENSION
+                || (long) photoW * photoH * bytesPerPixel > bitmapBudget) {
+            photoW /= 2;
+            photoH /= 2;
+            scaleFactor *= 2;
+        }
+
+        // 2. Decode with inSampleSize into a reusable mutable bitmap
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = scaleFactor;
+        options.inMutable = true;
+        // RGB_565 for memory saving (no transparency needed for photos)
+        options.inPreferredConfig = DECODE_CONFIG;
+        // Decoders round sampled sizes up
+        int decodedW = (options.outWidth + scaleFactor - 1) / scaleFactor;
+        int decodedH = (options.outHeight + scaleFactor - 1) / scaleFactor;
+        options.inBitmap = pool.get(decodedW, decodedH, DECODE_CONFIG);
+
+        if (options.inBitmap == null) {
+            return BitmapFactory.decodeFile(path, options);
+        }
+        try {
+            Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+            if (bitmap != null) return bitmap;
+        } catch (IllegalArgumentException e) {
+            // Pooled bitmap could not be reused for this file
+        }
+        pool.put(options.inBitmap);
+        options.inBitmap = null;
+        return BitmapFactory.decodeFile(path, options);
+    }
+}
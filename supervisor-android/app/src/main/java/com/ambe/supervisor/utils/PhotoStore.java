@@ -0,0 +1,171 @@
+package com.ambe.supervisor.utils;
+
+import android.content.Context;
+import android.os.Environment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+// Content-addressed storage for attendance photos.
+//   captures/  camera output, only read by the photo pipeline and deleted once processed
+//   photos/    final files named <sha256>.<ext>, written to a temp file and renamed into place,
+//              so a crash never leaves a truncated photo under a real name
+// A stored photo is referenced by attendance rows through photoHash (= its file name); files
+// no row references are removed by collectGarbage() from the daily maintenance job.
+public class PhotoStore {
+    static final String CAPTURE_DIR = "captures";
+    static final String STORE_DIR = "photos";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Files younger than this are left alone: a capture may still be in the camera app, and a
+    // committed photo is only referenced once its row is inserted
+    public static final long ORPHAN_GRACE_MILLIS = 6 * 60 * 60 * 1000L;
+
+    private final File captureDir;
+    private final File storeDir;
+
+    public PhotoStore(Context context) {
+        File root = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        if (root == null) {
+            root = context.getFilesDir(); // Fallback to internal storage
+        }
+        captureDir = new File(root, CAPTURE_DIR);
+        storeDir = new File(root, STORE_DIR);
+    }
+
+    // Empty file for the camera app to write into (shared through the FileProvider)
+    public File newCaptureFile() throws IOException {
+        ensureDir(captureDir);
+        File capture = new File(captureDir, "capture_" + System.currentTimeMillis() + "_" + System.nanoTime() + ".jpg");
+        if (!capture.createNewFile()) throw new IOException("Capture file already exists: " + capture);
+        return capture;
+    }
+
+    /** A photo being written. Write to {@link #stream()}, then {@link #commit} or {@link #abort}. */
+    public final class Pending {
+        private final File temp;
+        private final FileOutputStream file;
+        private final MessageDigest digest;
+        private final DigestOutputStream stream;
+        private String hash;
+
+        Pending() throws IOException {
+            ensureDir(storeDir);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            temp = File.createTempFile("photo_", TEMP_SUFFIX, storeDir);
+            file = new FileOutputStream(temp);
+            stream = new DigestOutputStream(file, digest);
+        }
+
+        public OutputStream stream() {
+            return stream;
+        }
+
+        // SHA-256 of the committed bytes, as used for photoHash and the upload
+        public String hash() {
+            return hash;
+        }
+
+        /** Syncs the temp file and renames it to its content hash. Returns the stored file. */
+        public File commit(String extension) throws IOException {
+            try {
+                stream.flush();
+                file.getFD().sync();
+            } finally {
+                stream.close();
+            }
+            hash = HashUtils.toHex(digest.digest());
+            File target = new File(storeDir, hash + extension);
+            if (target.exists()) {
+                // Same bytes already stored; refresh it so a concurrent GC sees it as new
+                temp.delete();
+                target.setLastModified(System.currentTimeMillis());
+                return target;
+            }
+            if (!temp.renameTo(target)) {
+                temp.delete();
+                throw new IOException("Could not store photo " + target.getName());
+            }
+            return target;
+        }
+
+        public void abort() {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Already failing; the temp file is removed below
+            }
+            temp.delete();
+        }
+    }
+
+    public Pending begin() throws IOException {
+        return new Pending();
+    }
+
+    // Hash a stored file is addressed by, or null for paths outside the store (pre-store photos)
+    public String hashOf(String path) {
+        if (path == null) return null;
+        File file = new File(path);
+        if (!storeDir.equals(file.getParentFile())) return null;
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        return dot > 0 && !name.endsWith(TEMP_SUFFIX) ? name.substring(0, dot) : null;
+    }
+
+    public static final class GcResult {
+        public int filesDeleted;
+        public long bytesDeleted;
+    }
+
+    /**
+     * Deletes stored photos whose hash is not in {@code referencedHashes}, leftover temp files and
+     * stale captures, all only once older than ORPHAN_GRACE_MILLIS.
+     */
+    public GcResult collectGarbage(Set<String> referencedHashes, long nowMillis) {
+        GcResult result = new GcResult();
+        long cutoff = nowMillis - ORPHAN_GRACE_MILLIS;
+
+        File[] stored = storeDir.listFiles();
+        if (stored != null) {
+            for (File file : stored) {
+                if (!file.isFile() || file.lastModified() > cutoff) continue;
+                String hash = hashOf(file.getAbsolutePath());
+                if (hash != null && referencedHashes.contains(hash)) continue;
+                delete(file, result);
+            }
+        }
+
+        // Cancelled or failed captures
+        File[] captures = captureDir.listFiles();
+        if (captures != null) {
+            for (File file : captures) {
+                if (file.isFile() && file.lastModified() <= cutoff) delete(file, result);
+            }
+        }
+        return result;
+    }
+
+    private static void delete(File file, GcResult result) {
+        long size = file.length();
+        if (file.delete()) {
+            result.filesDeleted++;
+            result.bytesDeleted += size;
+        }
+    }
+
+    private static void ensureDir(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create " + dir);
+        }
+    }
+}
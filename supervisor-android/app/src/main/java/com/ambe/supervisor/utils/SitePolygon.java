@@ -0,0 +1,180 @@
+package com.ambe.supervisor.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Polygon site boundary (plain Java). Point-in-polygon checks go through a bounding box and then
+// only the edges registered in the point's latitude band, so a test touches a handful of edges
+// even for polygons with hundreds of vertices. Distances widen band by band from the point's band.
+// Coordinates are treated as a flat local projection: polygons crossing the antimeridian or
+// reaching a pole are rejected by parse().
+public final class SitePolygon {
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final int MAX_BANDS = 256;
+    private static final double MAX_ABS_LAT = 89.0;
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final int n;
+    private final double minLat, maxLat, minLng, maxLng;
+    private final double bandHeight;
+    private final int[][] bandEdges; // Edge i runs from vertex i to vertex (i + 1) % n
+    private final double metersPerDegreeLng;
+
+    private SitePolygon(double[] lats, double[] lngs) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.n = lats.length;
+
+        double minLa = Double.MAX_VALUE, maxLa = -Double.MAX_VALUE, minLn = Double.MAX_VALUE, maxLn = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minLa = Math.min(minLa, lats[i]);
+            maxLa = Math.max(maxLa, lats[i]);
+            minLn = Math.min(minLn, lngs[i]);
+            maxLn = Math.max(maxLn, lngs[i]);
+        }
+        minLat = minLa;
+        maxLat = maxLa;
+        minLng = minLn;
+        maxLng = maxLn;
+        metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians((minLat + maxLat) / 2));
+
+        int bands = Math.max(1, Math.min(MAX_BANDS, n));
+        bandHeight = Math.max((maxLat - minLat) / bands, 1e-12);
+        List<List<Integer>> buckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) buckets.add(new ArrayList<>());
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            int from = band(Math.min(lats[i], lats[j]), bands);
+            int to = band(Math.max(lats[i], lats[j]), bands);
+            for (int b = from; b <= to; b++) buckets.get(b).add(i);
+        }
+        bandEdges = new int[bands][];
+        for (int b = 0; b < bands; b++) {
+            List<Integer> bucket = buckets.get(b);
+            int[] edges = new int[bucket.size()];
+            for (int k = 0; k < edges.length; k++) edges[k] = bucket.get(k);
+            bandEdges[b] = edges;
+        }
+    }
+
+    /**
+     * Parses a boundary stored as a JSON array of [lat, lng] pairs. Returns null when the value is
+     * missing or has fewer than three vertices, so callers fall back to the circular radius.
+     */
+    public static SitePolygon parse(String boundary) {
+        if (boundary == null || boundary.isEmpty()) return null;
+        List<Double> values = new ArrayList<>();
+        try {
+            for (String token : boundary.split("[\\[\\],\\s]+")) {
+                if (!token.isEmpty()) values.add(Double.parseDouble(token));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (values.size() % 2 != 0 || values.size() < 6) return null;
+
+        int count = values.size() / 2;
+        // A closing vertex repeating the first one is implied
+        if (values.get(0).equals(values.get(values.size() - 2)) && values.get(1).equals(values.get(values.size() - 1))) {
+            count--;
+        }
+        if (count < 3) return null;
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            lats[i] = values.get(2 * i);
+            lngs[i] = values.get(2 * i + 1);
+            if (Math.abs(lats[i]) > MAX_ABS_LAT || Math.abs(lngs[i]) > 180) return null;
+            minLng = Math.min(minLng, lngs[i]);
+            maxLng = Math.max(maxLng, lngs[i]);
+        }
+        // A site spanning more than half the globe is an antimeridian crossing written in [-180, 180]
+        if (maxLng - minLng > 180) return null;
+        return new SitePolygon(lats, lngs);
+    }
+
+    public double getMinLat() { return minLat; }
+    public double getMaxLat() { return maxLat; }
+    public double getMinLng() { return minLng; }
+    public double getMaxLng() { return maxLng; }
+
+    public boolean contains(double lat, double lng) {
+        if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng) return false;
+
+        // Even-odd ray cast towards +lng over this band's edges only
+        boolean inside = false;
+        for (int i : bandEdges[band(lat, bandEdges.length)]) {
+            int j = (i + 1) % n;
+            double latI = lats[i], latJ = lats[j];
+            if ((latI > lat) != (latJ > lat)) {
+                double crossLng = lngs[i] + (lat - latI) * (lngs[j] - lngs[i]) / (latJ - latI);
+                if (lng < crossLng) inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Meters to the boundary, negative inside. Exact up to {@code exactWithin}; beyond that a lower
+     * bound may be returned (the distance to the bounding box, or to the nearest unscanned band).
+     */
+    public double signedDistance(double lat, double lng, double exactWithin) {
+        double boxDistance = distanceToBox(lat, lng);
+        if (boxDistance > exactWithin) return boxDistance;
+
+        // Scan the point's band, then widen one band each way until no unscanned edge can be closer.
+        // Edges spanning several bands are measured more than once, which is harmless.
+        int bands = bandEdges.length;
+        int center = band(lat, bands);
+        double best = scanBand(lat, lng, center, Double.MAX_VALUE);
+        for (int k = 0; ; k++) {
+            // Unscanned edges lie wholly above band center+k or below band center-k
+            double bound = Double.MAX_VALUE;
+            if (center + k + 1 < bands) bound = Math.min(bound, Math.max(0, minLat + (center + k + 1) * bandHeight - lat));
+            if (center - k > 0) bound = Math.min(bound, Math.max(0, lat - (minLat + (center - k) * bandHeight)));
+            if (bound == Double.MAX_VALUE) break; // Every band scanned
+            bound *= METERS_PER_DEGREE;
+            if (best <= bound) break;
+            if (bound > exactWithin) {
+                best = bound;
+                break;
+            }
+            if (center + k + 1 < bands) best = scanBand(lat, lng, center + k + 1, best);
+            if (center - k - 1 >= 0) best = scanBand(lat, lng, center - k - 1, best);
+        }
+        return contains(lat, lng) ? -best : best;
+    }
+
+    private double scanBand(double lat, double lng, int band, double best) {
+        for (int i : bandEdges[band]) {
+            best = Math.min(best, segmentDistance(lat, lng, i, (i + 1) % n));
+        }
+        return best;
+    }
+
+    private double distanceToBox(double lat, double lng) {
+        double dy = lat < minLat ? minLat - lat : lat > maxLat ? lat - maxLat : 0;
+        double dx = lng < minLng ? minLng - lng : lng > maxLng ? lng - maxLng : 0;
+        dy *= METERS_PER_DEGREE;
+        dx *= metersPerDegreeLng;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Point-to-segment distance in a local flat projection (sites are at most a few km across)
+    private double segmentDistance(double lat, double lng, int i, int j) {
+        double ax = (lngs[i] - lng) * metersPerDegreeLng, ay = (lats[i] - lat) * METERS_PER_DEGREE;
+        double bx = (lngs[j] - lng) * metersPerDegreeLng, by = (lats[j] - lat) * METERS_PER_DEGREE;
+        double ex = bx - ax, ey = by - ay;
+        double lengthSq = ex * ex + ey * ey;
+        double t = lengthSq > 0 ? Math.max(0, Math.min(1, -(ax * ex + ay * ey) / lengthSq)) : 0;
+        double px = ax + t * ex, py = ay + t * ey;
+        return Math.sqrt(px * px + py * py);
+    }
+
+    private int band(double lat, int bands) {
+        int b = (int) ((lat - minLat) / bandHeight);
+        return b < 0 ? 0 : b >= bands ? bands - 1 : b;
+    }
+}
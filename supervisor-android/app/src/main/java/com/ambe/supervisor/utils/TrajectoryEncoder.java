@@ -0,0 +1,192 @@
+package com.ambe.supervisor.utils;
+
+import com.ambe.supervisor.database.LocationLogEntity;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+// Turns queued location_logs rows into compact tracks for POST /supervisor/location/batch.
+// Rows are grouped per supervisor and site, simplified with Douglas-Peucker inside runs of equal
+// status (every status change is kept), then delta-encoded as integers:
+//   origin = [latE6, lngE6, epochMs], points = [dLatE6, dLngE6, dtMs, statusIndex, ...]
+public final class TrajectoryEncoder {
+    public static final double TOLERANCE_METERS = 10;
+    private static final double E6 = 1_000_000;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+
+    private TrajectoryEncoder() {
+    }
+
+    public static final class Track {
+        // Gson-serialized payload
+        public final Map<String, Object> payload;
+        // Source rows covered by this track, kept or simplified away
+        public final List<Integer> logIds;
+        public final int pointCount;
+
+        Track(Map<String, Object> payload, List<Integer> logIds, int pointCount) {
+            this.payload = payload;
+            this.logIds = logIds;
+            this.pointCount = pointCount;
+        }
+    }
+
+    // UTC, matching the literal 'Z' (a local-time formatter would shift fixes by the device's offset)
+    public static String formatTimestamp(long epochMillis) {
+        SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(epochMillis));
+    }
+
+    public static List<Track> encode(List<LocationLogEntity> logs, double toleranceMeters) {
+        Map<String, List<LocationLogEntity>> groups = new LinkedHashMap<>();
+        for (LocationLogEntity log : logs) {
+            String key = log.supervisorId + "|" + log.siteId + "|" + log.supervisorName;
+            List<LocationLogEntity> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(log);
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_FORMAT, Locale.US);
+        // The server reads the trailing 'Z' literally, so decode the same way
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        List<Track> tracks = new ArrayList<>();
+        for (List<LocationLogEntity> group : groups.values()) {
+            Collections.sort(group, (a, b) -> {
+                int byTime = String.valueOf(a.timestamp).compareTo(String.valueOf(b.timestamp));
+                return byTime != 0 ? byTime : Integer.compare(a.id, b.id);
+            });
+            tracks.add(encodeTrack(group, simplify(group, toleranceMeters), format));
+        }
+        return tracks;
+    }
+
+    // Indices of the points to keep: DP within each status run, so each run keeps its first and last point
+    static boolean[] simplify(List<LocationLogEntity> points, double toleranceMeters) {
+        boolean[] keep = new boolean[points.size()];
+        int runStart = 0;
+        for (int i = 1; i <= points.size(); i++) {
+            if (i == points.size() || !sameStatus(points.get(i), points.get(runStart))) {
+                keep[runStart] = true;
+                keep[i - 1] = true;
+                douglasPeucker(points, runStart, i - 1, toleranceMeters, keep);
+                runStart = i;
+            }
+        }
+        return keep;
+    }
+
+    private static void douglasPeucker(List<LocationLogEntity> points, int first, int last, double tolerance, boolean[] keep) {
+        // Iterative to stay safe on long offline backlogs
+        int[] stack = new int[2 * (last - first + 2)];
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (end - start < 2) continue;
+
+            double maxDistance = -1;
+            int index = -1;
+            for (int i = start + 1; i < end; i++) {
+                double d = offsetMeters(points.get(i), points.get(start), points.get(end));
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    index = i;
+                }
+            }
+            if (maxDistance > tolerance) {
+                keep[index] = true;
+                stack[top++] = start;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = end;
+            }
+        }
+    }
+
+    // Distance from p to segment a-b in a local flat projection around a
+    private static double offsetMeters(LocationLogEntity p, LocationLogEntity a, LocationLogEntity b) {
+        double metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(a.latitude));
+        double px = (p.longitude - a.longitude) * metersPerDegreeLng, py = (p.latitude - a.latitude) * METERS_PER_DEGREE;
+        double bx = (b.longitude - a.longitude) * metersPerDegreeLng, by = (b.latitude - a.latitude) * METERS_PER_DEGREE;
+        double lengthSq = bx * bx + by * by;
+        double t = lengthSq > 0 ? Math.max(0, Math.min(1, (px * bx + py * by) / lengthSq)) : 0;
+        double dx = px - t * bx, dy = py - t * by;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static Track encodeTrack(List<LocationLogEntity> group, boolean[] keep, SimpleDateFormat format) {
+        LocationLogEntity first = group.get(0);
+        List<String> statuses = new ArrayList<>();
+        List<Long> points = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>(group.size());
+
+        long originLat = Math.round(first.latitude * E6);
+        long originLng = Math.round(first.longitude * E6);
+        long originTime = parseTime(first.timestamp, format, 0);
+        long prevLat = originLat, prevLng = originLng, prevTime = originTime;
+        int count = 0;
+
+        for (int i = 0; i < group.size(); i++) {
+            LocationLogEntity log = group.get(i);
+            ids.add(log.id);
+            if (!keep[i]) continue;
+
+            long lat = Math.round(log.latitude * E6);
+            long lng = Math.round(log.longitude * E6);
+            long time = parseTime(log.timestamp, format, prevTime);
+            String status = log.status != null ? log.status : "Unknown";
+            int statusIndex = statuses.indexOf(status);
+            if (statusIndex < 0) {
+                statusIndex = statuses.size();
+                statuses.add(status);
+            }
+
+            points.add(lat - prevLat);
+            points.add(lng - prevLng);
+            points.add(time - prevTime);
+            points.add((long) statusIndex);
+            prevLat = lat;
+            prevLng = lng;
+            prevTime = time;
+            count++;
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("supervisorId", first.supervisorId);
+        payload.put("supervisorName", first.supervisorName);
+        payload.put("siteId", first.siteId);
+        payload.put("statuses", statuses);
+        payload.put("origin", new long[]{originLat, originLng, originTime});
+        payload.put("points", points);
+        return new Track(payload, ids, count);
+    }
+
+    private static long parseTime(String timestamp, SimpleDateFormat format, long fallback) {
+        if (timestamp == null) return fallback;
+        try {
+            return format.parse(timestamp).getTime();
+        } catch (ParseException e) {
+            return fallback;
+        }
+    }
+
+    private static boolean sameStatus(LocationLogEntity a, LocationLogEntity b) {
+        return a.status == null ? b.status == null : a.status.equals(b.status);
+    }
+}
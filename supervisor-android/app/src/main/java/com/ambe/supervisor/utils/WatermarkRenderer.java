@@ -0,0 +1,128 @@
+package com.ambe.supervisor.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+
+// Stamps the attendance text block onto the bottom of a photo.
+// The text is drawn once into a small overlay bitmap and only that strip is composited onto the
+// photo. Paint, font metrics and the overlay are cached per photo width, so repeated captures at
+// the same resolution allocate nothing. Not thread-safe: use it from a single worker thread.
+public class WatermarkRenderer {
+    public static final int MAX_LINES = 6;
+    // Same proportions as the original two-line stamp: 4% text, 5% line step, last baseline 7% up
+    private static final float TEXT_SIZE_RATIO = 0.04f;
+    private static final float LINE_STEP_RATIO = 0.05f;
+    private static final float BOTTOM_MARGIN_RATIO = 0.07f;
+    private static final float MARGIN_X = 20;
+    private static final float SHADOW_RADIUS = 5.0f, SHADOW_DX = 2.0f, SHADOW_DY = 2.0f;
+
+    private static final class Layout {
+        final int width;
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        final Paint.FontMetrics metrics = new Paint.FontMetrics();
+        final float lineStep;
+        final float maxTextWidth;
+        final Bitmap overlay; // Sized for MAX_LINES; fewer lines use its bottom part
+        final Canvas overlayCanvas;
+        final float lastBaseline; // Baseline of the last line, in overlay coordinates
+
+        Layout(int width) {
+            this.width = width;
+            paint.setColor(Color.WHITE);
+            paint.setTextSize(width * TEXT_SIZE_RATIO);
+            paint.setShadowLayer(SHADOW_RADIUS, SHADOW_DX, SHADOW_DY, Color.BLACK);
+            paint.getFontMetrics(metrics);
+            lineStep = width * LINE_STEP_RATIO;
+            maxTextWidth = width - 2 * MARGIN_X;
+
+            // Room above the first line for ascent + shadow, below the last for descent + shadow
+            float above = -metrics.ascent + SHADOW_RADIUS;
+            float below = metrics.descent + SHADOW_RADIUS + SHADOW_DY;
+            int height = (int) Math.ceil(above + (MAX_LINES - 1) * lineStep + below);
+            overlay = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            overlayCanvas = new Canvas(overlay);
+            lastBaseline = height - below;
+        }
+    }
+
+    // Portrait and landscape captures usually alternate between two widths, so keep two
+    private Layout recent;
+    private Layout previous;
+    private final Canvas photoCanvas = new Canvas();
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    /**
+     * Draws {@code lines} (null entries skipped, at most MAX_LINES) bottom-aligned onto {@code photo},
+     * which must be mutable. Text wider than the photo is clipped to fit.
+     */
+    public void render(Bitmap photo, String... lines) {
+        int count = 0;
+        for (String line : lines) {
+            if (line != null) count++;
+        }
+        if (count == 0) return;
+        count = Math.min(count, MAX_LINES);
+
+        int w = photo.getWidth();
+        int h = photo.getHeight();
+        Layout layout = layout(w);
+
+        // Strip of the overlay actually used by this many lines
+        float firstBaseline = layout.lastBaseline - (count - 1) * layout.lineStep;
+        int top = Math.max(0, (int) Math.floor(firstBaseline + layout.metrics.ascent - SHADOW_RADIUS));
+        int bottom = layout.overlay.getHeight();
+
+        layout.overlayCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        float y = firstBaseline;
+        int drawn = 0;
+        for (String line : lines) {
+            if (line == null) continue;
+            if (drawn++ == MAX_LINES) break;
+            int chars = layout.paint.breakText(line, true, layout.maxTextWidth, null);
+            layout.overlayCanvas.drawText(line, 0, chars, MARGIN_X, y, layout.paint);
+            y += layout.lineStep;
+        }
+
+        // Overlay's last baseline lands where the original stamp put it: 7% of the width above the bottom
+        int offset = Math.round(h - w * BOTTOM_MARGIN_RATIO - layout.lastBaseline);
+        src.set(0, top, w, bottom);
+        dst.set(0, top + offset, w, bottom + offset);
+        if (dst.top < 0) {
+            src.top -= dst.top;
+            dst.top = 0;
+        }
+        if (dst.bottom > h) {
+            src.bottom -= dst.bottom - h;
+            dst.bottom = h;
+        }
+        if (src.top >= src.bottom) return;
+        photoCanvas.setBitmap(photo);
+        photoCanvas.drawBitmap(layout.overlay, src, dst, null);
+        photoCanvas.setBitmap(null);
+    }
+
+    public void release() {
+        if (recent != null) recent.overlay.recycle();
+        if (previous != null) previous.overlay.recycle();
+        recent = null;
+        previous = null;
+    }
+
+    private Layout layout(int width) {
+        if (recent != null && recent.width == width) return recent;
+
+        Layout layout = previous != null && previous.width == width ? previous : null;
+        if (layout == null) {
+            if (previous != null) previous.overlay.recycle();
+            layout = new Layout(width);
+        }
+        previous = recent;
+        recent = layout;
+        return layout;
+    }
+}
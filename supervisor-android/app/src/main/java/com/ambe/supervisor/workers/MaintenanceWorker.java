@@ -0,0 +1,129 @@
+package com.ambe.supervisor.workers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.ambe.supervisor.database.AppDatabase;
+import com.ambe.supervisor.utils.PhotoStore;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Daily retention job: prunes old synced attendance and its photos, collects orphaned photo files,
+// then compacts the database
+public class MaintenanceWorker extends Worker {
+    private static final String TAG = "MaintenanceWorker";
+    private static final String WORK_NAME = "maintenance";
+    public static final String PREF_RETENTION_DAYS = "retentionDays";
+    private static final int DEFAULT_RETENTION_DAYS = 30;
+
+    public static final String OUTPUT_ROWS_DELETED = "rowsDeleted";
+    public static final String OUTPUT_PHOTOS_DELETED = "photosDeleted";
+    public static final String OUTPUT_BYTES_RECLAIMED = "bytesReclaimed";
+
+    public MaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(false) // Low storage is exactly when this should run
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(MaintenanceWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            Context context = getApplicationContext();
+            AppDatabase db = AppDatabase.getDatabase(context);
+
+            SharedPreferences prefs = context.getSharedPreferences("AmbeSupervisorPrefs", Context.MODE_PRIVATE);
+            int retentionDays = Math.max(1, prefs.getInt(PREF_RETENTION_DAYS, DEFAULT_RETENTION_DAYS));
+            Calendar cutoff = Calendar.getInstance();
+            cutoff.add(Calendar.DAY_OF_YEAR, -retentionDays);
+            String cutoffDate = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(cutoff.getTime());
+
+            long dbBytesBefore = databaseBytes(context);
+
+            // 1. Rows and their photo files
+            List<String> photoPaths = db.attendanceDao().pruneAttendance(cutoffDate);
+            int rowsDeleted = photoPaths.size();
+
+            int photosDeleted = 0;
+            long photoBytes = 0;
+            PhotoStore store = new PhotoStore(context);
+            for (String path : photoPaths) {
+                if (path == null) continue;
+                // Stored photos can be shared by rows with identical bytes; keep them while referenced
+                String hash = store.hashOf(path);
+                if (hash != null && db.attendanceDao().countPhotoReferences(hash) > 0) continue;
+                File photo = new File(path);
+                long size = photo.length();
+                if (photo.isFile() && photo.delete()) {
+                    photosDeleted++;
+                    photoBytes += size;
+                }
+            }
+
+            // 2. Orphans: captures that were cancelled or failed, and stored photos no row points to
+            PhotoStore.GcResult gc = store.collectGarbage(
+                    new HashSet<>(db.attendanceDao().getReferencedPhotoHashes()), System.currentTimeMillis());
+            photosDeleted += gc.filesDeleted;
+            photoBytes += gc.bytesDeleted;
+
+            // 3. Compact: VACUUM rewrites the file, the checkpoint folds and truncates the WAL
+            if (rowsDeleted > 0) {
+                SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+                sqlite.execSQL("VACUUM");
+                try (Cursor cursor = sqlite.query("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                    cursor.moveToFirst();
+                }
+            }
+
+            long dbBytesReclaimed = Math.max(0, dbBytesBefore - databaseBytes(context));
+            long bytesReclaimed = photoBytes + dbBytesReclaimed;
+            Log.i(TAG, "Pruned " + rowsDeleted + " rows and " + photosDeleted + " photos older than " + cutoffDate
+                    + ", reclaimed " + bytesReclaimed + " bytes (" + photoBytes + " photos, " + dbBytesReclaimed + " database)");
+
+            Data output = new Data.Builder()
+                    .putInt(OUTPUT_ROWS_DELETED, rowsDeleted)
+                    .putInt(OUTPUT_PHOTOS_DELETED, photosDeleted)
+                    .putLong(OUTPUT_BYTES_RECLAIMED, bytesReclaimed)
+                    .build();
+            return Result.success(output);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.retry();
+        }
+    }
+
+    // Main database file plus its WAL
+    private static long databaseBytes(Context context) {
+        File dbFile = context.getDatabasePath(AppDatabase.DATABASE_NAME);
+        File walFile = new File(dbFile.getPath() + "-wal");
+        return dbFile.length() + walFile.length();
+    }
+}
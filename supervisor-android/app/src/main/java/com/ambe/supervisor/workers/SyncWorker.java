@@ -1,8 +1,14 @@
 package com.ambe.supervisor.workers;
 
 import android.content.Context;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 import androidx.work.ListenableWorker.Result;
@@ -12,44 +18,58 @@ import com.ambe.supervisor.api.ApiService;
 import com.ambe.supervisor.database.AppDatabase;
 import com.ambe.supervisor.database.AttendanceEntity;
 import com.ambe.supervisor.database.LocationLogEntity;
+import com.ambe.supervisor.utils.HashUtils;
+import com.ambe.supervisor.utils.TrajectoryEncoder;
 import com.google.gson.Gson;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.ByteArrayOutputStream;
-import android.util.Base64;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 public class SyncWorker extends Worker {
+    private static final String TAG = "SyncWorker";
+    // Input flag: only upload queued location logs (used by LocationService)
+    public static final String KEY_LOCATION_ONLY = "locationOnly";
+    private static final String LOCATION_SYNC_WORK = "location_log_sync";
+    // Transitions logged within this window go up together
+    private static final long LOCATION_SYNC_DELAY_SECONDS = 30;
+    // Location logs per upload request
+    private static final int LOCATION_CHUNK_SIZE = 200;
+
+    // Batch bounds for attendance upload (records carry photo hashes, not photos)
+    private static final int BATCH_MAX_RECORDS = 100;
+    private static final long BATCH_MAX_BYTES = 256 * 1024;
 
     private AppDatabase db;
     private String lastError = "";
+    private final Gson gson = new Gson();
 
     public SyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
         // Initialize DB lazily in doWork to prevent constructor failures
     }
 
-    private String getBase64FromPath(String path) {
-        if (path == null) return null;
-        try {
-            File file = new File(path);
-            if (!file.exists()) return null;
-            
-            // Use try-with-resources to close stream
-            try (FileInputStream fis = new FileInputStream(file)) {
-                byte[] fileBytes = new byte[(int) file.length()];
-                fis.read(fileBytes);
-                String base64 = Base64.encodeToString(fileBytes, Base64.NO_WRAP);
-                return "data:image/jpeg;base64," + base64;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+    // Upload queued location logs once online; repeated calls while pending collapse into one run
+    public static void enqueueLocationLogSync(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(LOCATION_SYNC_DELAY_SECONDS, TimeUnit.SECONDS)
+                .setInputData(new Data.Builder().putBoolean(KEY_LOCATION_ONLY, true).build())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(LOCATION_SYNC_WORK, ExistingWorkPolicy.KEEP, request);
     }
 
     @NonNull
@@ -61,12 +81,18 @@ public class SyncWorker extends Worker {
                 db = AppDatabase.getDatabase(getApplicationContext());
             }
 
+            if (getInputData().getBoolean(KEY_LOCATION_ONLY, false)) {
+                return syncLocationLogs() ? Result.success() : Result.retry();
+            }
+
             lastError = "Starting Sync..."; // Initialize
+            // Small attendance rows go first, photos follow on their own channel
             boolean attendanceSynced = syncAttendance();
+            boolean photosSynced = syncPhotos();
             // We don't care if location logs fail, attendance is priority
             syncLocationLogs(); 
 
-            if (attendanceSynced) {
+            if (attendanceSynced && photosSynced) {
                 return Result.success();
             } else {
                 // Return failure with error message so user can see it
@@ -92,98 +118,281 @@ public class SyncWorker extends Worker {
             if (unsynced.isEmpty()) return true;
 
             boolean allSuccess = true;
+            long now = System.currentTimeMillis();
 
-            // Upload ONE BY ONE to avoid payload issues and ensure partial success
+            // Pack records into batches bounded by count and payload size
+            List<AttendanceEntity> batch = new ArrayList<>();
+            List<byte[]> batchJson = new ArrayList<>();
+            long batchBytes = 0;
             for (AttendanceEntity entity : unsynced) {
-                try {
-                    List<Map<String, Object>> syncPayload = new ArrayList<>();
-                    Map<String, Object> record = new HashMap<>();
-                    // Use a unique string ID for backend (e.g., empId_date_time) or just random
-                    record.put("id", entity.employeeId + "_" + System.currentTimeMillis()); 
-                    record.put("employeeId", entity.employeeId);
-                    record.put("siteId", entity.siteId); // Added siteId
-                    record.put("date", entity.date);
-                    record.put("status", entity.status);
-                    record.put("checkInTime", entity.timestamp); // Map timestamp -> checkInTime
-                    record.put("type", entity.type);
-                    record.put("deviceId", entity.deviceId);
-                    
-                    // Convert local path to Base64 for upload
-                    String base64Image = getBase64FromPath(entity.photoPath);
-                    if (base64Image != null) {
-                        record.put("photoUrl", base64Image);
-                    } else {
-                        record.put("photoUrl", entity.photoPath);
-                    }
-                    
-                    record.put("supervisorName", entity.supervisorName);
-                    
-                    Map<String, Double> location = new HashMap<>();
-                    location.put("lat", entity.latitude);
-                    location.put("lng", entity.longitude);
-                    record.put("location", location);
+                ensurePhotoHash(entity);
+                byte[] json = gson.toJson(toSyncRecord(entity, now)).getBytes(StandardCharsets.UTF_8);
 
-                    syncPayload.add(record);
+                if (!batch.isEmpty() && (batch.size() >= BATCH_MAX_RECORDS || batchBytes + json.length > BATCH_MAX_BYTES)) {
+                    if (!syncBatch(batch, batchJson, now)) allSuccess = false;
+                    batch.clear();
+                    batchJson.clear();
+                    batchBytes = 0;
+                }
+                batch.add(entity);
+                batchJson.add(json);
+                batchBytes += json.length;
+            }
+            if (!batch.isEmpty() && !syncBatch(batch, batchJson, now)) {
+                allSuccess = false;
+            }
 
-                    String jsonBody = new Gson().toJson(syncPayload);
-                    String response = ApiService.syncAttendanceBlocking(jsonBody);
+            return allSuccess;
+        } catch (Exception e) {
+            e.printStackTrace();
+            String msg = e.getMessage();
+            if (msg == null) msg = e.getClass().getSimpleName();
+            lastError = "Outer Sync Error: " + msg;
+        }
+        return false;
+    }
 
-                    if (response != null) {
-                        db.attendanceDao().markAsSynced(entity.id);
-                    } else {
-                        allSuccess = false;
-                        lastError = "Empty response from server";
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    String msg = e.getMessage();
-                    if (msg == null) msg = e.getClass().getSimpleName();
+    // Unique string ID for backend (empId_time_localId), also used to match per-record results
+    private static String recordId(AttendanceEntity entity, long now) {
+        return entity.employeeId + "_" + now + "_" + entity.id;
+    }
+
+    private static Map<String, Object> toSyncRecord(AttendanceEntity entity, long now) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("id", recordId(entity, now));
+        record.put("employeeId", entity.employeeId);
+        record.put("siteId", entity.siteId); // Added siteId
+        record.put("date", entity.date);
+        record.put("status", entity.status);
+        record.put("checkInTime", entity.timestamp); // Map timestamp -> checkInTime
+        record.put("type", entity.type);
+        record.put("deviceId", entity.deviceId);
+
+        // Photo bytes are uploaded separately in syncPhotos(), the record only references them
+        if (entity.photoHash != null) {
+            record.put("photoHash", entity.photoHash);
+        } else {
+            record.put("photoUrl", entity.photoPath);
+        }
+
+        record.put("supervisorName", entity.supervisorName);
+
+        Map<String, Double> location = new HashMap<>();
+        location.put("lat", entity.latitude);
+        location.put("lng", entity.longitude);
+        record.put("location", location);
+        return record;
+    }
+
+    private void ensurePhotoHash(AttendanceEntity entity) {
+        if (entity.photoHash != null || entity.photoPath == null) return;
+        File photo = new File(entity.photoPath);
+        if (!photo.exists()) return;
+        try {
+            entity.photoHash = HashUtils.sha256(photo);
+            db.attendanceDao().setPhotoHash(entity.id, entity.photoHash);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Uploads one batch and marks the accepted records as synced. Rejected records stay queued.
+    private boolean syncBatch(List<AttendanceEntity> batch, List<byte[]> batchJson, long now) {
+        Map<String, AttendanceEntity> byRecordId = new HashMap<>();
+        for (AttendanceEntity entity : batch) {
+            byRecordId.put(recordId(entity, now), entity);
+        }
+
+        try {
+            String response = ApiService.syncAttendanceBlocking(out -> {
+                out.write('[');
+                for (int i = 0; i < batchJson.size(); i++) {
+                    if (i > 0) out.write(',');
+                    out.write(batchJson.get(i));
+                }
+                out.write(']');
+            });
+
+            if (response == null) {
+                lastError = "Empty response from server";
+                return false;
+            }
+
+            Set<Integer> failedIds = new HashSet<>();
+            JSONObject result = new JSONObject(response);
+            JSONArray errors = result.optJSONArray("errors");
+            if (errors != null) {
+                for (int i = 0; i < errors.length(); i++) {
+                    JSONObject error = errors.optJSONObject(i);
+                    if (error == null) continue;
+
+                    String msg = error.optString("error", "");
+                    // "Already Marked" or "Duplicate" means the server has it, treat as SUCCESS
+                    if (isAlreadySyncedError(msg)) continue;
                     lastError = msg;
-                    
-                    // Handle "Already Marked" or "Duplicate" as SUCCESS
-                    // Backend returns 200 with errors array usually, but if it throws 409/500:
-                    if (msg != null && (msg.contains("already marked") || msg.contains("Duplicate") || msg.contains("locked"))) {
-                        db.attendanceDao().markAsSynced(entity.id);
+
+                    AttendanceEntity failed = byRecordId.get(error.optString("id", ""));
+                    if (failed != null) {
+                        failedIds.add(failed.id);
                     } else {
-                        allSuccess = false;
+                        // Older backends only report employeeId
+                        String employeeId = error.optString("employeeId", "");
+                        for (AttendanceEntity entity : batch) {
+                            if (employeeId.equals(entity.employeeId)) failedIds.add(entity.id);
+                        }
                     }
                 }
             }
 
-            return allSuccess;
+            List<Integer> syncedIds = new ArrayList<>();
+            for (AttendanceEntity entity : batch) {
+                if (!failedIds.contains(entity.id)) syncedIds.add(entity.id);
+            }
+            if (!syncedIds.isEmpty()) {
+                db.attendanceDao().markAllAsSynced(syncedIds);
+            }
+            return failedIds.isEmpty();
         } catch (Exception e) {
             e.printStackTrace();
             String msg = e.getMessage();
             if (msg == null) msg = e.getClass().getSimpleName();
-            lastError = "Outer Sync Error: " + msg;
+            lastError = msg;
+
+            // Backend returns 200 with errors array usually, but if a single record throws 409/500:
+            if (batch.size() == 1 && isAlreadySyncedError(msg)) {
+                db.attendanceDao().markAsSynced(batch.get(0).id);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
-    private boolean syncLocationLogs() {
+    private static boolean isAlreadySyncedError(String msg) {
+        return msg != null && (msg.contains("already marked") || msg.contains("Duplicate") || msg.contains("locked"));
+    }
+
+    // Uploads photos of synced records, skipping any the server already has
+    private boolean syncPhotos() {
         try {
-            List<LocationLogEntity> logs = db.attendanceDao().getAllLocationLogs();
-            if (logs.isEmpty()) return true;
+            List<AttendanceEntity> pending = db.attendanceDao().getPendingPhotoUploads();
+            if (pending.isEmpty()) return true;
+
+            boolean allSuccess = true;
+            Set<String> handled = new HashSet<>();
+
+            for (AttendanceEntity entity : pending) {
+                if (!handled.add(entity.photoHash)) continue; // Same photo on several records
 
-            for (LocationLogEntity log : logs) {
                 try {
-                    String jsonBody = new Gson().toJson(log);
-                    String response = ApiService.logLocationBlocking(jsonBody);
-                    
-                    if (response != null) {
-                        db.attendanceDao().deleteLocationLog(log.id);
+                    File photo = entity.photoPath != null ? new File(entity.photoPath) : null;
+                    if (photo == null || !photo.exists()) {
+                        // Nothing left on disk to send, stop retrying it
+                        db.attendanceDao().markPhotoUploaded(entity.photoHash);
+                        continue;
+                    }
+
+                    // A retry after a timeout usually finds the photo already stored
+                    if (!ApiService.hasPhotoBlocking(entity.photoHash)) {
+                        ApiService.uploadPhotoBlocking(entity.photoHash, photo, entity.photoRatio);
                     }
+                    db.attendanceDao().markPhotoUploaded(entity.photoHash);
                 } catch (Exception e) {
                     e.printStackTrace();
-                    // If it's a server error (e.g. 500 due to bad data), we should probably delete it or mark it as failed
-                    // For now, just catch so we can proceed to the next log
-                    // Ideally: if (e.getMessage().contains("500")) db.attendanceDao().deleteLocationLog(log.id);
+                    String msg = e.getMessage();
+                    if (msg == null) msg = e.getClass().getSimpleName();
+                    lastError = "Photo Upload Error: " + msg;
+                    allSuccess = false;
                 }
             }
-            return true; 
+            return allSuccess;
         } catch (Exception e) {
             e.printStackTrace();
+            String msg = e.getMessage();
+            if (msg == null) msg = e.getClass().getSimpleName();
+            lastError = "Outer Photo Sync Error: " + msg;
         }
         return false;
     }
+
+    // Queued logs go up in bounded chunks, each as one request of simplified, delta-encoded tracks
+    private boolean syncLocationLogs() {
+        try {
+            int afterId = 0;
+            while (true) {
+                List<LocationLogEntity> chunk = db.attendanceDao().getLocationLogChunk(afterId, LOCATION_CHUNK_SIZE);
+                if (chunk.isEmpty()) return true;
+                afterId = chunk.get(chunk.size() - 1).id;
+                if (!uploadLocationChunk(chunk)) return false;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Uploads {@code logs}, bisecting on a row rejection until each refused row is on its own, then
+     * dead-letters it. Returns false on 5xx, network errors, timeouts and rate limiting: the run
+     * stops and no row is blamed.
+     */
+    private boolean uploadLocationChunk(List<LocationLogEntity> logs) {
+        try {
+            postLocationLogs(logs);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (!isRowRejection(serverStatus(e.getMessage()))) return false;
+            if (logs.size() == 1) {
+                LocationLogEntity log = logs.get(0);
+                Log.w(TAG, "Dead-lettering location log " + log.id + ": " + e.getMessage());
+                db.attendanceDao().markLocationLogDeadLetter(log.id);
+                return true;
+            }
+        }
+
+        // Bisect to find the bad rows; the batch endpoint is idempotent, so re-posting is safe
+        int mid = logs.size() / 2;
+        return uploadLocationChunk(logs.subList(0, mid)) && uploadLocationChunk(logs.subList(mid, logs.size()));
+    }
+
+    // 4xx blames the rows sent, except a timeout or rate limit
+    private static boolean isRowRejection(int status) {
+        return status >= 400 && status < 500
+                && status != 408 && status != 429;
+    }
+
+    private void postLocationLogs(List<LocationLogEntity> logs) throws Exception {
+        List<TrajectoryEncoder.Track> tracks = TrajectoryEncoder.encode(logs, TrajectoryEncoder.TOLERANCE_METERS);
+        List<Map<String, Object>> payload = new ArrayList<>();
+        int points = 0;
+        for (TrajectoryEncoder.Track track : tracks) {
+            payload.add(track.payload);
+            points += track.pointCount;
+        }
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("tracks", payload);
+        ApiService.uploadLocationTracksBlocking(gson.toJson(body));
+
+        // Simplified-away rows are covered by the uploaded track too
+        db.attendanceDao().deleteLocationLogs(idsOf(logs));
+        Log.d(TAG, "Uploaded " + points + " of " + logs.size() + " location points in " + tracks.size() + " tracks");
+    }
+
+    private static List<Integer> idsOf(List<LocationLogEntity> logs) {
+        List<Integer> ids = new ArrayList<>(logs.size());
+        for (LocationLogEntity log : logs) ids.add(log.id);
+        return ids;
+    }
+
+    // HTTP status from ApiService's "Server Error N: ..." messages, -1 for anything else
+    private static int serverStatus(String msg) {
+        if (msg == null || !msg.startsWith("Server Error ")) return -1;
+        int end = msg.indexOf(':');
+        try {
+            return Integer.parseInt(msg.substring("Server Error ".length(), end > 0 ? end : msg.length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
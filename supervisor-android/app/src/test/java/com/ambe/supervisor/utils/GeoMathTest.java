@@ -0,0 +1,77 @@
+package com.ambe.supervisor.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class GeoMathTest {
+
+    // Vincenty (1975) test line: Flinders Peak -> Buninyong, 54972.271 m on WGS84
+    @Test
+    public void preciseDistanceMatchesReferenceGeodesics() {
+        double flindersLat = -(37 + 57 / 60.0 + 3.72030 / 3600);
+        double flindersLon = 144 + 25 / 60.0 + 29.52440 / 3600;
+        double buninyongLat = -(37 + 39 / 60.0 + 10.15610 / 3600);
+        double buninyongLon = 143 + 55 / 60.0 + 35.38390 / 3600;
+        assertEquals(54972.271, GeoMath.preciseDistance(flindersLat, flindersLon, buninyongLat, buninyongLon), 0.001);
+
+        // One degree along the equator and along a meridian from the equator
+        assertEquals(111319.491, GeoMath.preciseDistance(0, 0, 0, 1), 0.001);
+        assertEquals(110574.389, GeoMath.preciseDistance(0, 0, 1, 0), 0.001);
+        assertEquals(0, GeoMath.preciseDistance(19.07, 72.87, 19.07, 72.87), 0);
+    }
+
+    @Test
+    public void fastDistanceStaysWithinErrorBound() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            double lat = (random.nextDouble() - 0.5) * 140; // Up to +-70 degrees
+            double lon = (random.nextDouble() - 0.5) * 360;
+            double meters = random.nextDouble() * GeoMath.FAST_PATH_MAX_METERS;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double lat2 = lat + meters * Math.cos(bearing) / 111_000;
+            double lon2 = lon + meters * Math.sin(bearing) / (111_000 * Math.cos(Math.toRadians(lat)));
+            if (lon2 > 180) lon2 -= 360;
+            if (lon2 < -180) lon2 += 360;
+
+            double fast = GeoMath.fastDistance(lat, lon, lat2, lon2);
+            if (fast > GeoMath.FAST_PATH_MAX_METERS) continue;
+            double precise = GeoMath.preciseDistance(lat, lon, lat2, lon2);
+            assertTrue("fast " + fast + " vs precise " + precise + " at " + lat + "," + lon,
+                    Math.abs(fast - precise) <= GeoMath.errorBound(fast));
+        }
+    }
+
+    @Test
+    public void fastDistanceHandlesTheAntimeridian() {
+        double across = GeoMath.fastDistance(0, 179.995, 0, -179.995);
+        assertEquals(GeoMath.preciseDistance(0, 179.995, 0, -179.995), across, GeoMath.errorBound(across));
+    }
+
+    @Test
+    public void distanceIsPreciseNearThresholds() {
+        // ~200 m north of the center, tested against a 200 m radius
+        double lat = 19.0, lon = 72.8;
+        double lat2 = lat + 200 / 110_700.0;
+        double precise = GeoMath.preciseDistance(lat, lon, lat2, lon);
+        assertEquals(precise, GeoMath.distance(lat, lon, lat2, lon, precise, precise + 40), 0);
+
+        // Far from either threshold the fast value is returned as is
+        assertEquals(GeoMath.fastDistance(lat, lon, lat2, lon), GeoMath.distance(lat, lon, lat2, lon, 1000, 1040), 0);
+
+        // Beyond the fast path range always precise
+        double far = GeoMath.distance(0, 0, 0, 1, 100, 140);
+        assertEquals(111319.491, far, 0.001);
+    }
+
+    @Test
+    public void isWithinUsesTheRadius() {
+        double lat = 19.0, lon = 72.8;
+        assertTrue(GeoMath.isWithin(lat + 100 / 110_700.0, lon, lat, lon, 200));
+        assertFalse(GeoMath.isWithin(lat + 300 / 110_700.0, lon, lat, lon, 200));
+    }
+}
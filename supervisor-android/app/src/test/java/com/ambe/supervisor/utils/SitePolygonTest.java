@@ -0,0 +1,125 @@
+package com.ambe.supervisor.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SitePolygonTest {
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    // U shape opening north: the notch between the arms is outside
+    private static final String CONCAVE = "[[0,0],[0,0.03],[0.03,0.03],[0.03,0.02],[0.01,0.02],[0.01,0.01],[0.03,0.01],[0.03,0]]";
+    // Diamond whose left and right vertices sit on latitude 0
+    private static final String DIAMOND = "[[0,0],[0.01,0.01],[0,0.02],[-0.01,0.01]]";
+
+    @Test
+    public void parseRejectsDegenerateInput() {
+        assertNull(SitePolygon.parse(null));
+        assertNull(SitePolygon.parse(""));
+        assertNull(SitePolygon.parse("[[0,0],[0,1]]"));
+        assertNull(SitePolygon.parse("[[0,0],[0,1],[0,0]]")); // Closing vertex doesn't count
+        assertNull(SitePolygon.parse("[[0,0],[0,1],[1,x]]"));
+        assertNotNull(SitePolygon.parse("[[0,0],[0,1],[1,1],[0,0]]"));
+    }
+
+    @Test
+    public void concavePolygonExcludesTheNotch() {
+        SitePolygon polygon = SitePolygon.parse(CONCAVE);
+        assertTrue(polygon.contains(0.005, 0.015)); // Base of the U
+        assertTrue(polygon.contains(0.02, 0.005)); // Left arm
+        assertTrue(polygon.contains(0.02, 0.025)); // Right arm
+        assertFalse(polygon.contains(0.02, 0.015)); // Notch, inside the bounding box
+        assertFalse(polygon.contains(0.04, 0.015));
+
+        // Notch point: nearest edges are the arms' inner sides, 0.005 deg away
+        double notch = polygon.signedDistance(0.02, 0.015, 1000);
+        assertEquals(0.005 * METERS_PER_DEGREE, notch, 1.0);
+        assertTrue(polygon.signedDistance(0.005, 0.015, 1000) < 0);
+    }
+
+    @Test
+    public void pointOnEdgeIsAtZeroDistance() {
+        SitePolygon polygon = SitePolygon.parse(CONCAVE);
+        assertEquals(0, polygon.signedDistance(0, 0.015, 1000), 1e-6);
+        assertEquals(0, polygon.signedDistance(0.02, 0.01, 1000), 1e-6);
+        assertEquals(0, polygon.signedDistance(0.03, 0.03, 1000), 1e-6); // Vertex
+    }
+
+    @Test
+    public void vertexOnRayLatitudeCountsOnce() {
+        SitePolygon polygon = SitePolygon.parse(DIAMOND);
+        assertTrue(polygon.contains(0, 0.01));
+        assertTrue(polygon.contains(0, 0.0001));
+        assertFalse(polygon.contains(0, -0.001));
+        assertFalse(polygon.contains(0, 0.021));
+
+        // Concave polygon: ray from inside the base passes the notch vertices' latitude
+        SitePolygon concave = SitePolygon.parse(CONCAVE);
+        assertTrue(concave.contains(0.01, 0.005));
+        assertFalse(concave.contains(0.01, 0.031));
+    }
+
+    @Test
+    public void rejectsAntimeridianAndPolarPolygons() {
+        assertNull(SitePolygon.parse("[[10,179.99],[10,-179.99],[10.01,-179.99],[10.01,179.99]]"));
+        assertNull(SitePolygon.parse("[[89.5,0],[89.5,120],[89.5,-120]]"));
+        assertNull(SitePolygon.parse("[[0,0],[0,181],[1,181]]"));
+    }
+
+    @Test
+    public void signedDistanceMatchesFullEdgeScan() {
+        // Star with 300 vertices, so the band prefilter actually skips edges
+        int n = 300;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            double r = (i % 2 == 0 ? 0.01 : 0.006);
+            lats[i] = 19.0 + r * Math.sin(angle);
+            lngs[i] = 72.8 + r * Math.cos(angle);
+            if (i > 0) json.append(',');
+            json.append('[').append(lats[i]).append(',').append(lngs[i]).append(']');
+        }
+        SitePolygon polygon = SitePolygon.parse(json.append(']').toString());
+        double metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(19.0));
+
+        Random random = new Random(42);
+        for (int t = 0; t < 5000; t++) {
+            double lat = 19.0 + (random.nextDouble() - 0.5) * 0.03;
+            double lng = 72.8 + (random.nextDouble() - 0.5) * 0.03;
+            double expected = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n;
+                expected = Math.min(expected, segmentDistance(lat, lng, lats[i], lngs[i], lats[j], lngs[j], metersPerDegreeLng));
+            }
+            double actual = Math.abs(polygon.signedDistance(lat, lng, 5000));
+            assertEquals(expected, actual, 1e-6);
+        }
+    }
+
+    @Test
+    public void farPointsGetALowerBound() {
+        SitePolygon polygon = SitePolygon.parse(CONCAVE);
+        double exact = polygon.signedDistance(0.1, 0.015, Double.MAX_VALUE);
+        double bounded = polygon.signedDistance(0.1, 0.015, 100);
+        assertTrue(bounded > 100);
+        assertTrue(bounded <= exact + 1e-6);
+    }
+
+    private static double segmentDistance(double lat, double lng, double lat1, double lng1, double lat2, double lng2, double metersPerDegreeLng) {
+        double ax = (lng1 - lng) * metersPerDegreeLng, ay = (lat1 - lat) * METERS_PER_DEGREE;
+        double bx = (lng2 - lng) * metersPerDegreeLng, by = (lat2 - lat) * METERS_PER_DEGREE;
+        double ex = bx - ax, ey = by - ay;
+        double lengthSq = ex * ex + ey * ey;
+        double t = lengthSq > 0 ? Math.max(0, Math.min(1, -(ax * ex + ay * ey) / lengthSq)) : 0;
+        double px = ax + t * ex, py = ay + t * ey;
+        return Math.sqrt(px * px + py * py);
+    }
+}
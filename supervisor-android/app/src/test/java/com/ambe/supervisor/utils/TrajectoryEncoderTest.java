@@ -0,0 +1,161 @@
+package com.ambe.supervisor.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.ambe.supervisor.database.LocationLogEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class TrajectoryEncoderTest {
+    private static final long START = 1_780_000_000_000L; // 2026-05-28T20:26:40Z
+
+    private static int nextId = 1;
+
+    private static LocationLogEntity log(String supervisorId, String siteId, double lat, double lng, String status, long time) {
+        LocationLogEntity log = new LocationLogEntity(supervisorId, "Name " + supervisorId, siteId, lat, lng, status,
+                TrajectoryEncoder.formatTimestamp(time));
+        log.id = nextId++;
+        return log;
+    }
+
+    // Absolute points of a track: {latE6, lngE6, epochMs, statusIndex} per kept point
+    @SuppressWarnings("unchecked")
+    private static List<long[]> decode(TrajectoryEncoder.Track track) {
+        long[] origin = (long[]) track.payload.get("origin");
+        List<Long> points = (List<Long>) track.payload.get("points");
+        assertEquals(0, points.size() % 4);
+        long lat = origin[0], lng = origin[1], time = origin[2];
+        List<long[]> decoded = new ArrayList<>();
+        for (int i = 0; i < points.size(); i += 4) {
+            lat += points.get(i);
+            lng += points.get(i + 1);
+            time += points.get(i + 2);
+            decoded.add(new long[]{lat, lng, time, points.get(i + 3)});
+        }
+        assertEquals(track.pointCount, decoded.size());
+        return decoded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> statuses(TrajectoryEncoder.Track track) {
+        return (List<String>) track.payload.get("statuses");
+    }
+
+    @Test
+    public void encodeDecodeRoundTripsEveryPoint() {
+        Random random = new Random(11);
+        List<LocationLogEntity> logs = new ArrayList<>();
+        double lat = 19.0760, lng = 72.8777;
+        for (int i = 0; i < 200; i++) {
+            lat += (random.nextDouble() - 0.5) * 0.001;
+            lng += (random.nextDouble() - 0.5) * 0.001;
+            logs.add(log("S1", "SITE1", lat, lng, i % 50 < 25 ? "In Range" : "Out of Range", START + i * 15_000L));
+        }
+
+        // Zero tolerance keeps every non-collinear point
+        List<TrajectoryEncoder.Track> tracks = TrajectoryEncoder.encode(logs, 0);
+        assertEquals(1, tracks.size());
+        List<long[]> decoded = decode(tracks.get(0));
+        assertEquals(logs.size(), decoded.size());
+        for (int i = 0; i < logs.size(); i++) {
+            LocationLogEntity log = logs.get(i);
+            long[] point = decoded.get(i);
+            assertEquals(Math.round(log.latitude * 1e6), point[0]);
+            assertEquals(Math.round(log.longitude * 1e6), point[1]);
+            assertEquals(START + i * 15_000L, point[2]);
+            assertEquals(log.status, statuses(tracks.get(0)).get((int) point[3]));
+        }
+    }
+
+    @Test
+    public void keepsTheEndpointsOfEveryStatusRun() {
+        // A straight walk north, so a wide tolerance drops every interior point of a run
+        String[] runs = {"In Range", "Out of Range", "In Range"};
+        List<LocationLogEntity> logs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            logs.add(log("S1", "SITE1", 19.0 + i * 0.0001, 72.8, runs[i / 10], START + i * 1000L));
+        }
+
+        TrajectoryEncoder.Track track = TrajectoryEncoder.encode(logs, 1000).get(0);
+        List<long[]> decoded = decode(track);
+        int[] kept = {0, 9, 10, 19, 20, 29};
+        assertEquals(kept.length, decoded.size());
+        for (int i = 0; i < kept.length; i++) {
+            assertEquals(START + kept[i] * 1000L, decoded.get(i)[2]);
+            assertEquals(runs[kept[i] / 10], statuses(track).get((int) decoded.get(i)[3]));
+        }
+        // Simplified rows are still covered by the track, so the upload can delete them
+        assertEquals(30, track.logIds.size());
+    }
+
+    @Test
+    public void groupsBySupervisorAndSiteWithStatusesPerPoint() {
+        List<LocationLogEntity> logs = Arrays.asList(
+                log("S1", "SITE1", 19.0, 72.8, "In Range", START),
+                log("S1", "SITE2", 19.1, 72.9, "Out of Range", START),
+                log("S2", "SITE1", 19.0, 72.8, "In Range", START + 1000),
+                log("S1", "SITE1", 19.01, 72.81, "Out of Range", START + 2000),
+                log("S1", "SITE2", 19.11, 72.91, "In Range", START + 2000));
+
+        List<TrajectoryEncoder.Track> tracks = TrajectoryEncoder.encode(logs, 0);
+        assertEquals(3, tracks.size());
+        for (TrajectoryEncoder.Track track : tracks) {
+            Map<String, Object> payload = track.payload;
+            for (int id : track.logIds) {
+                LocationLogEntity log = logs.get(indexOf(logs, id));
+                assertEquals(log.supervisorId, payload.get("supervisorId"));
+                assertEquals(log.siteId, payload.get("siteId"));
+            }
+        }
+
+        // S1 at SITE1 changes status: both points kept, each mapped to its own status
+        TrajectoryEncoder.Track first = tracks.get(0);
+        assertEquals(Arrays.asList(logs.get(0).id, logs.get(3).id), first.logIds);
+        assertEquals(Arrays.asList("In Range", "Out of Range"), statuses(first));
+        List<long[]> decoded = decode(first);
+        assertEquals(0, decoded.get(0)[3]);
+        assertEquals(1, decoded.get(1)[3]);
+    }
+
+    @Test
+    public void timestampsStayUtcAcrossADstChange() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            // Europe/London moves to BST at 2026-03-29T01:00Z
+            TimeZone.setDefault(TimeZone.getTimeZone("Europe/London"));
+            long beforeChange = 1_774_744_200_000L; // 2026-03-29T00:30:00Z
+            long afterChange = beforeChange + 3_600_000L;
+            assertEquals("2026-03-29T00:30:00.000Z", TrajectoryEncoder.formatTimestamp(beforeChange));
+            assertEquals("2026-03-29T01:30:00.000Z", TrajectoryEncoder.formatTimestamp(afterChange));
+
+            List<LocationLogEntity> logs = Arrays.asList(
+                    log("S1", "SITE1", 19.0, 72.8, "In Range", beforeChange),
+                    log("S1", "SITE1", 19.01, 72.8, "In Range", afterChange));
+            List<long[]> decoded = decode(TrajectoryEncoder.encode(logs, 0).get(0));
+            assertEquals(beforeChange, decoded.get(0)[2]);
+            assertEquals(afterChange, decoded.get(1)[2]);
+
+            // A positive offset zone as well: still the UTC wall clock
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+            assertEquals("2026-03-29T00:30:00.000Z", TrajectoryEncoder.formatTimestamp(beforeChange));
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    private static int indexOf(List<LocationLogEntity> logs, int id) {
+        for (int i = 0; i < logs.size(); i++) {
+            if (logs.get(i).id == id) return i;
+        }
+        fail("Unknown log id " + id);
+        return -1;
+    }
+}